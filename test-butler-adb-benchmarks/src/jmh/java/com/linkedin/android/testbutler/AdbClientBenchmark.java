@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks for the ADB client used by the physical devices app, run against a
+ * {@link FakeAdbServer} on the loopback interface so that only the client's own protocol handling
+ * and socket setup are measured.
+ *
+ * Each operation opens a fresh connection, the same way {@code AdbDevice} does. Selecting a
+ * device without a serial is benchmarked in {@link AdbTransportAnyBenchmark}, since a real ADB
+ * server refuses it when more than one device is connected.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AdbClientBenchmark {
+
+    private static final String ECHO_COMMAND = "echo";
+    private static final String ECHO_ARG = "ok";
+    static final String NOOP_COMMAND = "true";
+    private static final String LARGE_OUTPUT_COMMAND = "cat";
+    private static final String LARGE_OUTPUT_ARG = "/sdcard/large.txt";
+
+    /**
+     * Number of devices the fake server reports, which affects the size of the device list
+     */
+    @Param({"1", "16"})
+    public int deviceCount;
+
+    /**
+     * Size of the output streamed back for the large output benchmark
+     */
+    @Param({"1048576"})
+    public int largeOutputBytes;
+
+    private FakeAdbServer server;
+    private InetSocketAddress address;
+    private String lastSerial;
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        Set<String> serials = new LinkedHashSet<>();
+        for (int i = 0; i < deviceCount; i++) {
+            serials.add(String.format("emulator-%d", 5554 + 2 * i));
+        }
+        lastSerial = new ArrayList<>(serials).get(serials.size() - 1);
+
+        server = new FakeAdbServer(serials);
+        server.setShellOutput(ECHO_COMMAND + " " + ECHO_ARG,
+                (ECHO_ARG + "\n").getBytes(StandardCharsets.US_ASCII));
+        server.setShellOutput(LARGE_OUTPUT_COMMAND + " " + LARGE_OUTPUT_ARG,
+                largeOutput(largeOutputBytes));
+        address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws IOException {
+        server.close();
+    }
+
+    /**
+     * Equivalent to {@code adb devices}, including the parsing done by {@code AdbDevice}
+     */
+    @Benchmark
+    public List<String> listDevices() throws IOException {
+        String result = send(AdbCommand.getDevices());
+        List<String> serials = new ArrayList<>();
+        for (String line : result.trim().split("\n")) {
+            String[] parts = line.split("\t");
+            if (parts.length > 1) {
+                serials.add(parts[0].trim());
+            }
+        }
+        return serials;
+    }
+
+    /**
+     * Selects a device by serial and runs a command with no output
+     */
+    @Benchmark
+    public String selectTransportBySerial() throws IOException {
+        return send(AdbCommand.shell(lastSerial, NOOP_COMMAND));
+    }
+
+    /**
+     * A small shell command, to measure round trips per second through the whole client
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public String shellCommandThroughput() throws IOException {
+        return send(AdbCommand.shell(lastSerial, ECHO_COMMAND, ECHO_ARG));
+    }
+
+    /**
+     * A shell command whose output is much larger than a single ADB message, read until EOF
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public String largeOutputRead() throws IOException {
+        return send(AdbCommand.shell(lastSerial, LARGE_OUTPUT_COMMAND, LARGE_OUTPUT_ARG));
+    }
+
+    private String send(AdbCommand command) throws IOException {
+        return send(address, command);
+    }
+
+    static String send(InetSocketAddress address, AdbCommand command) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(address);
+            return command.execute(new AdbConnection(socket));
+        }
+    }
+
+    private static byte[] largeOutput(int size) {
+        // logcat-like lines, so the output is representative of what Test Butler actually reads
+        byte[] line = "10-19 12:00:00.000  1234  1234 D ButlerService: deviceKey=0123abcd\n"
+                .getBytes(StandardCharsets.US_ASCII);
+        byte[] output = new byte[size];
+        for (int i = 0; i < size; i += line.length) {
+            System.arraycopy(line, 0, output, i, Math.min(line.length, size - i));
+        }
+        return output;
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks selecting a device without a serial (equivalent to {@code adb shell} without
+ * {@code -s}), which only works while a single device is connected.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AdbTransportAnyBenchmark {
+
+    private FakeAdbServer server;
+    private InetSocketAddress address;
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        server = new FakeAdbServer(Collections.singleton("emulator-5554"));
+        address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws IOException {
+        server.close();
+    }
+
+    /**
+     * Selects the only device and runs a command with no output
+     */
+    @Benchmark
+    public String selectTransportAny() throws IOException {
+        return AdbClientBenchmark.send(address, AdbCommand.shell(null, AdbClientBenchmark.NOOP_COMMAND));
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+
+/**
+ * An in-process ADB server which speaks just enough of the smart-socket protocol to serve the
+ * commands in {@link AdbCommand}: {@code host:devices}, {@code host:transport-any},
+ * {@code host:transport:<serial>} and {@code shell:<command>}.
+ *
+ * Each client connection is served on its own thread. Shell commands have no device behind them;
+ * their output is whatever was registered with {@link #setShellOutput(String, byte[])}, or nothing.
+ */
+class FakeAdbServer implements Closeable {
+
+    private static final byte[] OKAY = "OKAY".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FAIL = "FAIL".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EMPTY = new byte[0];
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+    private final Set<String> serials;
+    private final String deviceList;
+    private final Map<String, byte[]> shellOutputs = new ConcurrentHashMap<>();
+
+    /**
+     * @param serials The serials of the devices this server reports as connected
+     */
+    FakeAdbServer(Set<String> serials) throws IOException {
+        this.serials = Collections.unmodifiableSet(new LinkedHashSet<>(serials));
+        StringBuilder sb = new StringBuilder();
+        for (String serial : this.serials) {
+            sb.append(serial).append("\tdevice\n");
+        }
+        this.deviceList = sb.toString();
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "FakeAdbServer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        });
+    }
+
+    /**
+     * @return The port the server is listening on, on the loopback address
+     */
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Register the output to stream back for a shell command, e.g. {@code "cat /sdcard/big"}
+     */
+    void setShellOutput(String command, byte[] output) {
+        shellOutputs.put(command, output);
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                // the server socket was closed
+                return;
+            }
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    serve(socket);
+                }
+            });
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            DataInputStream input = new DataInputStream(s.getInputStream());
+            OutputStream output = new BufferedOutputStream(s.getOutputStream());
+            boolean transportSelected = false;
+            while (true) {
+                String request = readRequest(input);
+                if (request == null) {
+                    return;
+                }
+                if ("host:devices".equals(request)) {
+                    output.write(OKAY);
+                    writeMsg(output, deviceList);
+                    output.flush();
+                    return;
+                } else if ("host:transport-any".equals(request)) {
+                    if (serials.isEmpty()) {
+                        fail(output, "no devices/emulators found");
+                        return;
+                    } else if (serials.size() > 1) {
+                        fail(output, "more than one device/emulator");
+                        return;
+                    }
+                    transportSelected = true;
+                    output.write(OKAY);
+                    output.flush();
+                } else if (request.startsWith("host:transport:")) {
+                    String serial = request.substring("host:transport:".length());
+                    if (!serials.contains(serial)) {
+                        fail(output, "device '" + serial + "' not found");
+                        return;
+                    }
+                    transportSelected = true;
+                    output.write(OKAY);
+                    output.flush();
+                } else if (request.startsWith("shell:") && transportSelected) {
+                    // the real server streams the raw output and closes the socket when it's done
+                    byte[] shellOutput = shellOutputs.get(request.substring("shell:".length()));
+                    output.write(OKAY);
+                    output.write(shellOutput != null ? shellOutput : EMPTY);
+                    output.flush();
+                    return;
+                } else {
+                    fail(output, "unknown host service");
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // the client went away; nothing to clean up beyond the socket
+        }
+    }
+
+    private static String readRequest(DataInputStream input) throws IOException {
+        byte[] prefix = new byte[4];
+        int first = input.read();
+        if (first < 0) {
+            return null;
+        }
+        prefix[0] = (byte) first;
+        input.readFully(prefix, 1, 3);
+        int length = Integer.parseInt(new String(prefix, StandardCharsets.US_ASCII), 16);
+        byte[] request = new byte[length];
+        input.readFully(request);
+        return new String(request, StandardCharsets.US_ASCII);
+    }
+
+    private static void fail(OutputStream output, String message) throws IOException {
+        output.write(FAIL);
+        writeMsg(output, message);
+        output.flush();
+    }
+
+    private static void writeMsg(OutputStream output, String message) throws IOException {
+        byte[] bytes = message.getBytes(StandardCharsets.US_ASCII);
+        output.write(String.format("%04x", bytes.length).getBytes(StandardCharsets.US_ASCII));
+        output.write(bytes);
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+/**
+ * Keys of the Bundle passed to {@link ButlerApi#applyDeviceConfig}. Keys missing from the Bundle
+ * are left unchanged on the device.
+ */
+public final class DeviceConfigKeys {
+
+    /** boolean: wifi enabled */
+    public static final String WIFI = "wifi";
+
+    /** boolean: mobile data enabled */
+    public static final String GSM = "gsm";
+
+    /** int: one of Surface.ROTATION_X */
+    public static final String ROTATION = "rotation";
+
+    /** int: one of Settings.Secure.LOCATION_MODE_X */
+    public static final String LOCATION_MODE = "locationMode";
+
+    /** boolean: always finish activities enabled */
+    public static final String ALWAYS_FINISH_ACTIVITIES = "alwaysFinishActivities";
+
+    /** boolean: system spell checker enabled */
+    public static final String SPELL_CHECKER = "spellChecker";
+
+    /** boolean: show the software IME even when a hardware keyboard is present */
+    public static final String SHOW_IME_WITH_HARD_KEYBOARD = "showImeWithHardKeyboard";
+
+    /** boolean: immersive mode confirmation enabled */
+    public static final String IMMERSIVE_MODE_CONFIRMATION = "immersiveModeConfirmation";
+
+    private DeviceConfigKeys() {
+    }
+}
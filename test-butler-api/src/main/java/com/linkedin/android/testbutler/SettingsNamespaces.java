@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+/**
+ * Names of the Settings namespaces accepted by {@link ButlerApi} methods taking a namespace
+ * parameter. They match the namespace names used by {@code adb shell settings}.
+ */
+public final class SettingsNamespaces {
+
+    /** Settings.Global */
+    public static final String GLOBAL = "global";
+
+    /** Settings.System */
+    public static final String SYSTEM = "system";
+
+    /** Settings.Secure */
+    public static final String SECURE = "secure";
+
+    private SettingsNamespaces() {
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+/**
+ * Names of the settings profiles accepted by {@link ButlerApi#applySettingsProfile(String)}. A
+ * profile is a curated batch of settings which is applied in one call and restored when the Test
+ * Butler service stops.
+ */
+public final class SettingsProfiles {
+
+    /** Skip package verification, so APKs installed during the run don't wait on the verifier */
+    public static final String INSTALL_ACCELERATION = "installAcceleration";
+
+    /**
+     * Turn off background overhead which adds timing noise to tests: autofill, content capture,
+     * haptic feedback, touch sounds and heads-up notifications
+     */
+    public static final String QUIET_DEVICE = "quietDevice";
+
+    private SettingsProfiles() {
+    }
+}
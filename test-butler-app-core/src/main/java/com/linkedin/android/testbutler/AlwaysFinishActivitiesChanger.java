@@ -65,7 +65,7 @@ class AlwaysFinishActivitiesChanger
         }
     }
 
-    private boolean getAlwaysFinishActivitiesState() {
+    boolean getAlwaysFinishActivitiesState() {
         try {
             if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1) {
                 return settings.system().getInt(Settings.System.ALWAYS_FINISH_ACTIVITIES) != 0;
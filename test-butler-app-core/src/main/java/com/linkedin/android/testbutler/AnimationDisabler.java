@@ -19,6 +19,9 @@ import android.app.Instrumentation;
 import android.os.IBinder;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Arrays;
@@ -35,13 +38,16 @@ final class AnimationDisabler {
 
     private static final float DISABLED = 0.0f;
 
+    private final ButlerStats stats;
+
     private float[] originalScaleFactors;
 
     private Method setAnimationScalesMethod;
     private Method getAnimationScalesMethod;
     private Object windowManagerObject;
 
-    AnimationDisabler() {
+    AnimationDisabler(@NonNull ButlerStats stats) {
+        this.stats = stats;
         try {
             Class<?> windowManagerStubClazz = Class.forName("android.view.IWindowManager$Stub");
             Method asInterface = windowManagerStubClazz.getDeclaredMethod("asInterface", IBinder.class);
@@ -68,7 +74,7 @@ final class AnimationDisabler {
     void disableAnimations() {
         try {
             originalScaleFactors = getAnimationScaleFactors();
-            setAnimationScaleFactors(DISABLED);
+            setAnimationScaleFactors(DISABLED, originalScaleFactors.length);
         } catch (Exception e) {
             Log.e(TAG, "Failed to disable animations", e);
         }
@@ -85,12 +91,44 @@ final class AnimationDisabler {
         }
     }
 
+    /**
+     * Re-disables animations if any of the animation scales has drifted from 0 (for example, because
+     * something on the device reset them).
+     *
+     * @return the animation scales in effect after any correction, or null if they could not be read
+     */
+    @Nullable
+    synchronized float[] ensureAnimationsDisabled() {
+        try {
+            float[] scaleFactors = getAnimationScaleFactors();
+            if (!isDisabled(scaleFactors)) {
+                Log.w(TAG, "Animation scales drifted to " + Arrays.toString(scaleFactors) + ", disabling again");
+                setAnimationScaleFactors(DISABLED, scaleFactors.length);
+                stats.increment(ButlerStats.ANIMATION_SCALE_CORRECTIONS);
+                scaleFactors = getAnimationScaleFactors();
+            }
+            return scaleFactors;
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to verify animations are disabled", e);
+            return null;
+        }
+    }
+
+    private static boolean isDisabled(float[] scaleFactors) {
+        for (float scaleFactor : scaleFactors) {
+            if (Float.compare(Math.abs(scaleFactor), DISABLED) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private float[] getAnimationScaleFactors() throws InvocationTargetException, IllegalAccessException {
         return (float[]) getAnimationScalesMethod.invoke(windowManagerObject);
     }
 
-    private void setAnimationScaleFactors(float scaleFactor) throws InvocationTargetException, IllegalAccessException {
-        float[] scaleFactors = new float[originalScaleFactors.length];
+    private void setAnimationScaleFactors(float scaleFactor, int count) throws InvocationTargetException, IllegalAccessException {
+        float[] scaleFactors = new float[count];
         Arrays.fill(scaleFactors, scaleFactor);
         setAnimationScalesMethod.invoke(windowManagerObject, new Object[]{scaleFactors});
     }
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import android.annotation.SuppressLint;
+import android.database.ContentObserver;
+import android.os.Build;
+import android.os.Handler;
+import android.provider.Settings;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Watches the animation scale settings and disables animations again as soon as anything (e.g. a
+ * system app on some OEM devices) changes them while tests are running.
+ */
+@SuppressLint("InlinedApi")
+class AnimationScaleWatchdog {
+
+    private static final String TAG = AnimationScaleWatchdog.class.getSimpleName();
+
+    // Before API 17 these settings live in Settings.System, under the same names
+    private static final String[] ANIMATION_SCALE_SETTINGS = {
+            Settings.Global.WINDOW_ANIMATION_SCALE,
+            Settings.Global.TRANSITION_ANIMATION_SCALE,
+            Settings.Global.ANIMATOR_DURATION_SCALE
+    };
+
+    private final SettingsAccessor settings;
+    private final AnimationDisabler animationDisabler;
+    private final ContentObserver observer;
+
+    private boolean started;
+
+    AnimationScaleWatchdog(@NonNull SettingsAccessor settings,
+                           @NonNull AnimationDisabler animationDisabler,
+                           @NonNull Handler handler) {
+        this.settings = settings;
+        this.animationDisabler = animationDisabler;
+        this.observer = new ContentObserver(handler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                // Our own correction triggers this again, but by then all scales are 0 so it's a no-op
+                AnimationScaleWatchdog.this.animationDisabler.ensureAnimationsDisabled();
+            }
+        };
+    }
+
+    /**
+     * Start watching the animation scales
+     *
+     * @return true if the watchdog is running
+     */
+    synchronized boolean start() {
+        if (started) {
+            return true;
+        }
+        SettingsAccessor.Namespace namespace = Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1
+                ? settings.system()
+                : settings.global();
+        for (String setting : ANIMATION_SCALE_SETTINGS) {
+            if (!settings.registerContentObserver(namespace.getUriFor(setting), false, observer)) {
+                Log.e(TAG, "Failed to watch " + setting + ", animation scale watchdog is not running");
+                settings.unregisterContentObserver(observer);
+                return false;
+            }
+        }
+        started = true;
+        // Catch anything that changed before we started watching
+        animationDisabler.ensureAnimationsDisabled();
+        return true;
+    }
+
+    /**
+     * Stop watching the animation scales. Must be called before animations are re-enabled.
+     */
+    synchronized void stop() {
+        if (started) {
+            settings.unregisterContentObserver(observer);
+            started = false;
+        }
+    }
+}
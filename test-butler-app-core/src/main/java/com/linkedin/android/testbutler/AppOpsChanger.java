@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import android.os.Build;
+import android.os.Bundle;
+import android.os.RemoteException;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.classForName;
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.getMethod;
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.getStaticInt;
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.invoke;
+
+/**
+ * Helper class for changing app op modes, which control special access like drawing overlays
+ * (SYSTEM_ALERT_WINDOW), usage stats access or writing settings that runtime permissions don't
+ * cover. Like "appops set", but any number of ops can be set in a single call.
+ */
+class AppOpsChanger {
+
+    private static final String TAG = AppOpsChanger.class.getSimpleName();
+
+    private static final int USER_SYSTEM = 0;
+    private static final String OPSTR_PREFIX = "android:";
+
+    // Original package modes keyed by op code, per package name. A null mode means the package had no
+    // mode of its own for the op, so it was controlled by the uid mode or the op's default.
+    private final Map<String, Map<Integer, Integer>> originals = new HashMap<>();
+
+    private final ServiceManagerWrapper serviceManager;
+
+    AppOpsChanger(@NonNull ServiceManagerWrapper serviceManager) {
+        this.serviceManager = serviceManager;
+    }
+
+    /**
+     * Set the given app op modes for a package, saving the original package mode the first time each op
+     * is changed
+     *
+     * @param modes AppOpsManager#MODE_* values keyed by op name, either as used by "appops set"
+     *              (e.g. "SYSTEM_ALERT_WINDOW") or as in AppOpsManager#OPSTR_* (e.g.
+     *              "android:system_alert_window")
+     * @return true if all modes were set, false on errors
+     */
+    synchronized boolean setAppOpModes(@NonNull String packageName, @NonNull Bundle modes) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+            Log.e(TAG, "App ops are not supported before 4.4");
+            return false;
+        }
+        try {
+            Object appOpsService = serviceManager.getIService("appops", "com.android.internal.app.IAppOpsService");
+            int uid = getPackageUid(packageName);
+
+            Map<Integer, Integer> packageOriginals = originals.get(packageName);
+            if (packageOriginals == null) {
+                packageOriginals = new LinkedHashMap<>();
+                originals.put(packageName, packageOriginals);
+            }
+
+            boolean success = true;
+            for (String name : modes.keySet()) {
+                int op;
+                try {
+                    op = getOpCode(name);
+                } catch (RemoteException e) {
+                    Log.e(TAG, "Unknown app op: " + name);
+                    success = false;
+                    continue;
+                }
+                try {
+                    if (!packageOriginals.containsKey(op)) {
+                        packageOriginals.put(op, getPackageMode(appOpsService, op, uid, packageName));
+                    }
+                    setMode(appOpsService, op, uid, packageName, modes.getInt(name));
+                } catch (Exception e) {
+                    Log.e(TAG, "Failed to set app op " + name + " of " + packageName, e);
+                    success = false;
+                }
+            }
+            return success;
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to set app ops of " + packageName, e);
+            return false;
+        }
+    }
+
+    /**
+     * Should be called after testing completes, to restore every app op changed through
+     * {@link #setAppOpModes(String, Bundle)} to its original mode
+     */
+    synchronized void restoreAppOpModes() {
+        if (originals.isEmpty()) {
+            return;
+        }
+        try {
+            Object appOpsService = serviceManager.getIService("appops", "com.android.internal.app.IAppOpsService");
+            for (Map.Entry<String, Map<Integer, Integer>> entry : originals.entrySet()) {
+                String packageName = entry.getKey();
+                try {
+                    int uid = getPackageUid(packageName);
+                    for (Map.Entry<Integer, Integer> original : entry.getValue().entrySet()) {
+                        int op = original.getKey();
+                        Integer mode = original.getValue();
+                        try {
+                            // Setting an op to its default mode drops the package's entry for it again, the
+                            // same as "appops reset"
+                            setMode(appOpsService, op, uid, packageName, mode != null ? mode : getDefaultMode(op));
+                        } catch (Exception e) {
+                            Log.e(TAG, "Failed to restore app op " + op + " of " + packageName, e);
+                        }
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "Failed to restore app ops of " + packageName, e);
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to restore app ops", e);
+        }
+        originals.clear();
+    }
+
+    private static int getOpCode(@NonNull String name) throws RemoteException {
+        if (name.startsWith(OPSTR_PREFIX)) {
+            name = name.substring(OPSTR_PREFIX.length());
+        }
+        return getStaticInt(classForName("android.app.AppOpsManager"), "OP_" + name.toUpperCase(Locale.US));
+    }
+
+    private int getPackageUid(@NonNull String packageName) throws RemoteException {
+        Object packageManager = serviceManager.getIService("package", "android.content.pm.IPackageManager");
+        int uid;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            uid = (Integer) invoke(getMethod(packageManager.getClass(), "getPackageUid", String.class, int.class, int.class),
+                    packageManager, packageName, 0, USER_SYSTEM);
+        } else {
+            uid = (Integer) invoke(getMethod(packageManager.getClass(), "getPackageUid", String.class, int.class),
+                    packageManager, packageName, USER_SYSTEM);
+        }
+        if (uid < 0) {
+            throw new IllegalArgumentException("Unknown package: " + packageName);
+        }
+        return uid;
+    }
+
+    /**
+     * @return the mode stored for the package itself, or null if it has none. Unlike checkOperation, this
+     * doesn't include the uid mode or the op's default.
+     */
+    @Nullable
+    private static Integer getPackageMode(@NonNull Object appOpsService, int op, int uid,
+                                          @NonNull String packageName) throws RemoteException {
+        List<?> packageOps = (List<?>) invoke(getMethod(appOpsService.getClass(), "getOpsForPackage",
+                int.class, String.class, int[].class), appOpsService, uid, packageName, new int[]{op});
+        if (packageOps == null) {
+            return null;
+        }
+        for (Object ops : packageOps) {
+            List<?> entries = (List<?>) invoke(getMethod(ops.getClass(), "getOps"), ops);
+            for (Object entry : entries) {
+                if ((Integer) invoke(getMethod(entry.getClass(), "getOp"), entry) == op) {
+                    return (Integer) invoke(getMethod(entry.getClass(), "getMode"), entry);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int getDefaultMode(int op) throws RemoteException {
+        return (Integer) invoke(getMethod(classForName("android.app.AppOpsManager"), "opToDefaultMode", int.class),
+                null, op);
+    }
+
+    private static void setMode(@NonNull Object appOpsService, int op, int uid, @NonNull String packageName,
+                                int mode) throws RemoteException {
+        invoke(getMethod(appOpsService.getClass(), "setMode", int.class, int.class, String.class, int.class),
+                appOpsService, op, uid, packageName, mode);
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import android.os.Bundle;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Helper class for reading and writing arbitrary settings, for the settings Test Butler has no
+ * dedicated method for
+ */
+class BulkSettingsChanger {
+
+    private static final String TAG = BulkSettingsChanger.class.getSimpleName();
+
+    // Original values keyed by setting name, per namespace name
+    private final Map<String, Map<String, String>> originals = new HashMap<>();
+
+    /**
+     * Write the given settings, saving their original values the first time each one is written
+     *
+     * @param name      The name of the namespace, see {@link SettingsNamespaces}
+     * @param namespace The namespace the settings live in
+     * @param values    The values to write, as strings keyed by setting name
+     * @return true if all settings were written, false on database errors
+     */
+    synchronized boolean putSettings(@NonNull String name, @NonNull SettingsAccessor.Namespace namespace,
+                                     @NonNull Bundle values) {
+        Map<String, String> namespaceOriginals = originals.get(name);
+        if (namespaceOriginals == null) {
+            namespaceOriginals = new LinkedHashMap<>();
+            originals.put(name, namespaceOriginals);
+        }
+
+        boolean success = true;
+        for (String key : values.keySet()) {
+            String value = values.getString(key);
+            String current = namespace.getString(key);
+            if (!namespaceOriginals.containsKey(key)) {
+                namespaceOriginals.put(key, current);
+            }
+            if (!TextUtils.equals(current, value)) {
+                success = namespace.putString(key, value) && success;
+            }
+        }
+        return success;
+    }
+
+    /**
+     * Read the given settings
+     *
+     * @param namespace The namespace the settings live in
+     * @param keys      The names of the settings to read
+     * @return the values of the settings as strings keyed by setting name; settings which don't
+     * exist are mapped to null
+     */
+    @NonNull
+    Bundle getSettings(@NonNull SettingsAccessor.Namespace namespace, @NonNull String[] keys) {
+        Bundle values = new Bundle();
+        for (String key : keys) {
+            values.putString(key, namespace.getString(key));
+        }
+        return values;
+    }
+
+    /**
+     * Should be called after testing completes, to restore every setting written through
+     * {@link #putSettings(String, SettingsAccessor.Namespace, Bundle)} to its original value.
+     * Must run before the other changers restore their settings, since the values saved here may
+     * already include their changes.
+     *
+     * @param settings The accessor the settings were written with
+     */
+    synchronized void restoreSettings(@NonNull SettingsAccessor settings) {
+        for (Map.Entry<String, Map<String, String>> entry : originals.entrySet()) {
+            SettingsAccessor.Namespace namespace = ButlerApiStubBase.getNamespace(settings, entry.getKey());
+            if (namespace == null) {
+                continue;
+            }
+            for (Map.Entry<String, String> original : entry.getValue().entrySet()) {
+                if (TextUtils.equals(namespace.getString(original.getKey()), original.getValue())) {
+                    continue;
+                }
+                if (!namespace.putString(original.getKey(), original.getValue())) {
+                    Log.e(TAG, "Failed to restore setting " + entry.getKey() + "." + original.getKey());
+                }
+            }
+        }
+        originals.clear();
+    }
+}
@@ -15,9 +15,21 @@
  */
 package com.linkedin.android.testbutler;
 
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
 import android.os.RemoteException;
+import android.text.TextUtils;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Base implementation for ButlerApi.Stub. Handles all basic Settings-based calls.
@@ -26,13 +38,65 @@ import androidx.annotation.NonNull;
  */
 public abstract class ButlerApiStubBase extends ButlerApi.Stub {
 
+    private static final String TAG = ButlerApiStubBase.class.getSimpleName();
+
+    // The constants in Settings.Global are only available on API 17+
+    private static final String WIFI_ON_SETTING = "wifi_on";
+    private static final String MOBILE_DATA_SETTING = "mobile_data";
+
+    private static final String[] NAMESPACES = {
+            SettingsNamespaces.GLOBAL,
+            SettingsNamespaces.SYSTEM,
+            SettingsNamespaces.SECURE
+    };
+
+    private final ButlerStats stats;
+    private final ServiceManagerWrapper serviceManager;
+    private final PendingOperations pendingOperations = new PendingOperations();
+    private final StartupTimings timings = new StartupTimings();
+
+    private HandlerThread settingsObserverThread;
+    private SettingsCheckpoint settingsCheckpoint;
+    private String checkpointWifiState;
+    private String checkpointMobileDataState;
+
     private AnimationDisabler animationDisabler;
+    private AnimationScaleWatchdog animationScaleWatchdog;
+    private PinnedSettings pinnedSettings;
+    private BulkSettingsChanger bulkSettingsChanger;
+    private SettingWaiter settingWaiter;
+    private final Map<String, SettingsSnapshot> startSnapshots = new HashMap<>();
+    private SettingsAccessor rawSettings;
     private RotationChanger rotationChanger;
     private LocationServicesChanger locationServicesChanger;
     private SpellCheckerDisabler spellCheckerDisabler;
     private ShowImeWithHardKeyboardHelper showImeWithHardKeyboardHelper;
     private ImmersiveModeConfirmationDisabler immersiveModeDialogDisabler;
     private AlwaysFinishActivitiesChanger alwaysFinishActivitiesChanger;
+    private SystemLocaleChanger systemLocaleChanger;
+    private DeviceIdleChanger deviceIdleChanger;
+    private PackageResetter packageResetter;
+    private PackageCompiler packageCompiler;
+    private AppOpsChanger appOpsChanger;
+    private SettingsProfileManager settingsProfileManager;
+
+    protected ButlerApiStubBase() {
+        this(new ButlerStats());
+    }
+
+    private ButlerApiStubBase(@NonNull ButlerStats stats) {
+        this(stats, ServiceManagerWrapper.newInstance(stats));
+    }
+
+    /**
+     * @param stats          the counters reported by {@link #getStats()}, for services which already count
+     *                       things before the stub is created
+     * @param serviceManager the system service cache shared with the service, which records in stats
+     */
+    protected ButlerApiStubBase(@NonNull ButlerStats stats, @NonNull ServiceManagerWrapper serviceManager) {
+        this.stats = stats;
+        this.serviceManager = serviceManager;
+    }
 
     @Override
     public boolean setLocationMode(int locationMode) throws RemoteException {
@@ -64,37 +128,433 @@ public abstract class ButlerApiStubBase extends ButlerApi.Stub {
         return alwaysFinishActivitiesChanger.setAlwaysFinishActivitiesState(enabled);
     }
 
+    @Override
+    public float[] ensureAnimationsDisabled() throws RemoteException {
+        return animationDisabler.ensureAnimationsDisabled();
+    }
+
+    @Override
+    public boolean setAnimationWatchdogState(boolean enabled) throws RemoteException {
+        if (enabled) {
+            return animationScaleWatchdog.start();
+        }
+        animationScaleWatchdog.stop();
+        return true;
+    }
+
+    @Override
+    public Bundle getStats() throws RemoteException {
+        return stats.toBundle();
+    }
+
+    /**
+     * @return the counters reported by {@link #getStats()}, so subclasses can add their own
+     */
+    @NonNull
+    protected ButlerStats getButlerStats() {
+        return stats;
+    }
+
+    @Override
+    public boolean pinSettings(String namespace, Bundle values) throws RemoteException {
+        SettingsAccessor.Namespace settingsNamespace = getNamespace(rawSettings, namespace);
+        if (settingsNamespace == null) {
+            Log.e(TAG, "Unknown settings namespace: " + namespace);
+            return false;
+        }
+        return pinnedSettings.pin(namespace, settingsNamespace, values);
+    }
+
+    @Override
+    public boolean unpinSettings(String namespace, String[] keys) throws RemoteException {
+        if (getNamespace(rawSettings, namespace) == null) {
+            Log.e(TAG, "Unknown settings namespace: " + namespace);
+            return false;
+        }
+        pinnedSettings.unpin(namespace, keys);
+        return true;
+    }
+
+    @Override
+    public boolean putSettings(String namespace, Bundle values) throws RemoteException {
+        SettingsAccessor.Namespace settingsNamespace = getNamespace(settingsCheckpoint, namespace);
+        if (settingsNamespace == null) {
+            Log.e(TAG, "Unknown settings namespace: " + namespace);
+            return false;
+        }
+        return bulkSettingsChanger.putSettings(namespace, settingsNamespace, values);
+    }
+
+    @Override
+    public Bundle getSettings(String namespace, String[] keys) throws RemoteException {
+        SettingsAccessor.Namespace settingsNamespace = getNamespace(settingsCheckpoint, namespace);
+        if (settingsNamespace == null) {
+            Log.e(TAG, "Unknown settings namespace: " + namespace);
+            return null;
+        }
+        return bulkSettingsChanger.getSettings(settingsNamespace, keys);
+    }
+
+    @Override
+    public Bundle getSettingsChangesSinceStart(String namespace) throws RemoteException {
+        SettingsAccessor.Namespace settingsNamespace = getNamespace(rawSettings, namespace);
+        if (settingsNamespace == null) {
+            Log.e(TAG, "Unknown settings namespace: " + namespace);
+            return null;
+        }
+        SettingsSnapshot startSnapshot;
+        synchronized (startSnapshots) {
+            startSnapshot = startSnapshots.get(namespace);
+        }
+        SettingsSnapshot snapshot = settingsNamespace.snapshot();
+        if (startSnapshot == null || snapshot == null) {
+            return null;
+        }
+        return startSnapshot.diff(snapshot);
+    }
+
+    @Override
+    public boolean awaitSetting(String namespace, String key, String expectedValue, long timeoutMs)
+            throws RemoteException {
+        SettingsAccessor.Namespace settingsNamespace = getNamespace(rawSettings, namespace);
+        if (settingsNamespace == null) {
+            Log.e(TAG, "Unknown settings namespace: " + namespace);
+            return false;
+        }
+        return settingWaiter.awaitSetting(settingsNamespace, key, expectedValue, timeoutMs);
+    }
+
+    /**
+     * Only applies the locale; waiting for the configuration change needs a Context, so that is
+     * left to the app process (see {@link LocaleWaiter})
+     */
+    @Override
+    public boolean setSystemLocale(String language, String country, long timeoutMs) throws RemoteException {
+        return systemLocaleChanger.setSystemLocale(new Locale(language, country));
+    }
+
+    @Override
+    public boolean setDozeEnabled(boolean enabled) throws RemoteException {
+        return deviceIdleChanger.setDozeEnabled(enabled);
+    }
+
+    @Override
+    public boolean setForceIdle(boolean idle) throws RemoteException {
+        return deviceIdleChanger.setForceIdle(idle);
+    }
+
+    @Override
+    public boolean setAppStandbyBucket(String packageName, int bucket) throws RemoteException {
+        return deviceIdleChanger.setAppStandbyBucket(packageName, bucket);
+    }
+
+    @Override
+    public boolean clearApplicationData(String packageName) throws RemoteException {
+        return packageResetter.clearApplicationData(packageName);
+    }
+
+    @Override
+    public boolean forceStopPackage(String packageName) throws RemoteException {
+        return packageResetter.forceStopPackage(packageName);
+    }
+
+    @Override
+    public long compilePackage(String packageName, String compilerFilter) throws RemoteException {
+        return packageCompiler.compilePackage(packageName, compilerFilter);
+    }
+
+    @Override
+    public boolean setAppOpModes(String packageName, Bundle modes) throws RemoteException {
+        return appOpsChanger.setAppOpModes(packageName, modes);
+    }
+
+    @Override
+    public boolean applySettingsProfile(String profile) throws RemoteException {
+        SettingsProfile settingsProfile = SettingsProfile.forName(profile);
+        if (settingsProfile == null) {
+            Log.e(TAG, "Unknown settings profile: " + profile);
+            return false;
+        }
+        return settingsProfileManager.apply(settingsProfile);
+    }
+
+    @Override
+    public IBinder getPrivilegedApi() throws RemoteException {
+        return this;
+    }
+
+    @Override
+    public boolean isIdle() throws RemoteException {
+        return pendingOperations.isIdle();
+    }
+
+    @Override
+    public void registerIdleCallback(ButlerIdleCallback callback) throws RemoteException {
+        pendingOperations.registerIdleCallback(callback);
+    }
+
+    @Override
+    public void unregisterIdleCallback(ButlerIdleCallback callback) throws RemoteException {
+        pendingOperations.unregisterIdleCallback(callback);
+    }
+
+    @Override
+    public Bundle getStartupTimings() throws RemoteException {
+        return timings.toBundle();
+    }
+
+    /**
+     * @return the timings reported by {@link #getStartupTimings()}, so the services can time their
+     * own startup phases
+     */
+    @NonNull
+    public StartupTimings getTimings() {
+        return timings;
+    }
+
+    /**
+     * @return the changes reported by {@link #isIdle()}, so subclasses can track their own
+     */
+    @NonNull
+    protected PendingOperations getPendingOperations() {
+        return pendingOperations;
+    }
+
+    @Override
+    public boolean checkpoint() throws RemoteException {
+        synchronized (settingsCheckpoint) {
+            settingsCheckpoint.checkpoint();
+            // Wifi and mobile data are not toggled via settings, but their settings reflect the current state
+            checkpointWifiState = getRadioState(WIFI_ON_SETTING);
+            checkpointMobileDataState = getRadioState(MOBILE_DATA_SETTING);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean resetToCheckpoint() throws RemoteException {
+        synchronized (settingsCheckpoint) {
+            Log.d(TAG, "Resetting " + settingsCheckpoint.getChangedSettingsCount()
+                    + " changed setting(s) to checkpoint");
+            boolean success = settingsCheckpoint.resetToCheckpoint();
+
+            String wifiState = getRadioState(WIFI_ON_SETTING);
+            if (canChangeWifiState() && checkpointWifiState != null
+                    && !TextUtils.equals(checkpointWifiState, wifiState)) {
+                success = setWifiState(isRadioEnabled(checkpointWifiState)) && success;
+            }
+            String mobileDataState = getRadioState(MOBILE_DATA_SETTING);
+            if (checkpointMobileDataState != null && !TextUtils.equals(checkpointMobileDataState, mobileDataState)) {
+                success = setGsmState(isRadioEnabled(checkpointMobileDataState)) && success;
+            }
+            return success;
+        }
+    }
+
+    @Override
+    public boolean applyDeviceConfig(Bundle config, boolean checkpoint) throws RemoteException {
+        if (checkpoint) {
+            checkpoint();
+        }
+
+        // Only touch the settings which differ from the requested configuration
+        boolean success = true;
+        if (config.containsKey(DeviceConfigKeys.WIFI)) {
+            boolean enabled = config.getBoolean(DeviceConfigKeys.WIFI);
+            String state = getRadioState(WIFI_ON_SETTING);
+            if (state == null || isRadioEnabled(state) != enabled) {
+                success = setWifiState(enabled) && success;
+            }
+        }
+        if (config.containsKey(DeviceConfigKeys.GSM)) {
+            boolean enabled = config.getBoolean(DeviceConfigKeys.GSM);
+            String state = getRadioState(MOBILE_DATA_SETTING);
+            if (state == null || isRadioEnabled(state) != enabled) {
+                success = setGsmState(enabled) && success;
+            }
+        }
+        if (config.containsKey(DeviceConfigKeys.ROTATION)) {
+            int rotation = config.getInt(DeviceConfigKeys.ROTATION);
+            if (rotationChanger.getRotation() != rotation) {
+                success = rotationChanger.setRotation(rotation) && success;
+            }
+        }
+        if (config.containsKey(DeviceConfigKeys.LOCATION_MODE)) {
+            int locationMode = config.getInt(DeviceConfigKeys.LOCATION_MODE);
+            if (locationServicesChanger.getLocationMode() != locationMode) {
+                success = locationServicesChanger.setLocationServicesState(locationMode) && success;
+            }
+        }
+        if (config.containsKey(DeviceConfigKeys.ALWAYS_FINISH_ACTIVITIES)) {
+            boolean enabled = config.getBoolean(DeviceConfigKeys.ALWAYS_FINISH_ACTIVITIES);
+            if (alwaysFinishActivitiesChanger.getAlwaysFinishActivitiesState() != enabled) {
+                success = alwaysFinishActivitiesChanger.setAlwaysFinishActivitiesState(enabled) && success;
+            }
+        }
+        if (config.containsKey(DeviceConfigKeys.SPELL_CHECKER)) {
+            boolean enabled = config.getBoolean(DeviceConfigKeys.SPELL_CHECKER);
+            if (spellCheckerDisabler.isSpellCheckerEnabled() != enabled) {
+                success = spellCheckerDisabler.setSpellChecker(enabled) && success;
+            }
+        }
+        if (config.containsKey(DeviceConfigKeys.SHOW_IME_WITH_HARD_KEYBOARD)) {
+            boolean enabled = config.getBoolean(DeviceConfigKeys.SHOW_IME_WITH_HARD_KEYBOARD);
+            if (showImeWithHardKeyboardHelper.getShowImeWithHardKeyboardState() != enabled) {
+                success = showImeWithHardKeyboardHelper.setShowImeWithHardKeyboardState(enabled) && success;
+            }
+        }
+        if (config.containsKey(DeviceConfigKeys.IMMERSIVE_MODE_CONFIRMATION)) {
+            boolean enabled = config.getBoolean(DeviceConfigKeys.IMMERSIVE_MODE_CONFIRMATION);
+            if (immersiveModeDialogDisabler.isEnabled() != enabled) {
+                success = immersiveModeDialogDisabler.setState(enabled) && success;
+            }
+        }
+        return success;
+    }
+
+    /**
+     * @return false if wifi can't be changed from this process, in which case
+     * {@link #resetToCheckpoint()} leaves restoring it to the caller
+     */
+    protected boolean canChangeWifiState() {
+        return true;
+    }
+
+    @Nullable
+    private String getRadioState(@NonNull String key) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            return null;
+        }
+        return settingsCheckpoint.global().getString(key);
+    }
+
+    /**
+     * @param name The name of a namespace, see {@link SettingsNamespaces}
+     * @return the matching namespace of the given accessor, or null if the name is unknown
+     */
+    @Nullable
+    static SettingsAccessor.Namespace getNamespace(@NonNull SettingsAccessor settings, @Nullable String name) {
+        if (SettingsNamespaces.GLOBAL.equals(name)) {
+            return settings.global();
+        } else if (SettingsNamespaces.SYSTEM.equals(name)) {
+            return settings.system();
+        } else if (SettingsNamespaces.SECURE.equals(name)) {
+            return settings.secure();
+        }
+        return null;
+    }
+
+    private static boolean isRadioEnabled(@NonNull String state) {
+        // wifi_on uses 1 for enabled and 2 for enabled while in airplane mode; mobile_data is 0 or 1
+        return "1".equals(state) || "2".equals(state);
+    }
+
     public void onCreate(@NonNull SettingsAccessor settings) {
+        // Record settings written through the ButlerApi so tests can reset them with resetToCheckpoint,
+        // except for pinned settings, which are not expected to change between tests
+        rawSettings = settings;
+        settingsCheckpoint = new SettingsCheckpoint(settings);
+        settings = settingsCheckpoint;
+
+        // Restore settings profiles left applied by a previous run which crashed, before anything
+        // below saves them as the original state
+        timings.begin("settingsProfileRecovery");
+        settingsProfileManager = new SettingsProfileManager(rawSettings);
+        settingsProfileManager.recover();
+        timings.end("settingsProfileRecovery");
+
+        // Settings observers are notified on this thread
+        settingsObserverThread = new HandlerThread("ButlerSettingsObserver");
+        settingsObserverThread.start();
+        Handler settingsObserverHandler = new Handler(settingsObserverThread.getLooper());
+
         // Save current device rotation so we can restore it after tests complete
+        timings.begin("rotationSave");
         rotationChanger = new RotationChanger(settings);
         rotationChanger.saveRotationState();
+        timings.end("rotationSave");
 
         // Save current location services setting so we can restore it after tests complete
+        timings.begin("locationModeSave");
         locationServicesChanger = new LocationServicesChanger(settings);
         locationServicesChanger.saveLocationServicesState();
+        timings.end("locationModeSave");
 
         // Disable animations on the device so tests can run reliably
-        animationDisabler = new AnimationDisabler();
+        timings.begin("animationsDisable");
+        animationDisabler = new AnimationDisabler(stats);
         animationDisabler.disableAnimations();
+        timings.end("animationsDisable");
+        animationScaleWatchdog = new AnimationScaleWatchdog(settings, animationDisabler, settingsObserverHandler);
 
+        pinnedSettings = new PinnedSettings(rawSettings, settingsObserverHandler, stats);
+
+        bulkSettingsChanger = new BulkSettingsChanger();
+        settingWaiter = new SettingWaiter(rawSettings, settingsObserverHandler);
+
+        timings.begin("spellCheckerApply");
         spellCheckerDisabler = new SpellCheckerDisabler(settings);
         spellCheckerDisabler.saveSpellCheckerState();
         // Disable spell checker by default
         spellCheckerDisabler.setSpellChecker(false);
+        timings.end("spellCheckerApply");
 
+        timings.begin("showImeApply");
         showImeWithHardKeyboardHelper = new ShowImeWithHardKeyboardHelper(settings);
         showImeWithHardKeyboardHelper.saveShowImeState();
         showImeWithHardKeyboardHelper.setShowImeWithHardKeyboardState(false);
+        timings.end("showImeApply");
 
         immersiveModeDialogDisabler = new ImmersiveModeConfirmationDisabler(settings);
 
+        timings.begin("alwaysFinishActivitiesSave");
         alwaysFinishActivitiesChanger = new AlwaysFinishActivitiesChanger(settings);
         alwaysFinishActivitiesChanger.saveAlwaysFinishActivitiesState();
+        timings.end("alwaysFinishActivitiesSave");
+
+        // The original locale is saved the first time it is changed
+        systemLocaleChanger = new SystemLocaleChanger(serviceManager);
+
+        // Doze and standby bucket changes are undone in onDestroy
+        deviceIdleChanger = new DeviceIdleChanger(serviceManager);
+
+        packageResetter = new PackageResetter(serviceManager);
+        packageCompiler = new PackageCompiler(serviceManager);
+
+        // Original app op modes are saved the first time each op is changed
+        appOpsChanger = new AppOpsChanger(serviceManager);
+
+        // Snapshot every namespace once the service's own changes are done, so tests which leak
+        // settings changes can be detected with getSettingsChangesSinceStart
+        timings.begin("settingsSnapshot");
+        synchronized (startSnapshots) {
+            for (String namespace : NAMESPACES) {
+                SettingsSnapshot snapshot = getNamespace(rawSettings, namespace).snapshot();
+                if (snapshot != null) {
+                    startSnapshots.put(namespace, snapshot);
+                }
+            }
+        }
+        timings.end("settingsSnapshot");
     }
 
     public void onDestroy() {
+        timings.begin("shutdown");
+
+        // Stop watching settings, so we don't fight against restoring them below
+        animationScaleWatchdog.stop();
+        pinnedSettings.restore();
+        settingsObserverThread.quit();
+        pendingOperations.kill();
+
+        // Restore settings written by the tests first, since their original values were saved after
+        // the changes below (and any profiles) were applied, and those have to win
+        bulkSettingsChanger.restoreSettings(settingsCheckpoint);
+
         // Re-enable animations on the emulator
+        timings.begin("animationsEnable");
         animationDisabler.enableAnimations();
+        timings.end("animationsEnable");
 
         // Reset location services state to whatever it originally was
         locationServicesChanger.restoreLocationServicesState();
@@ -113,5 +573,21 @@ public abstract class ButlerApiStubBase extends ButlerApi.Stub {
 
         // Restore always finish activities state to whatever it originally was
         alwaysFinishActivitiesChanger.restoreAlwaysFinishActivitiesState();
+
+        // Restore the device locale if a test changed it
+        systemLocaleChanger.restoreSystemLocale();
+
+        // Restore the original Doze state, and the standby buckets of any packages we changed
+        deviceIdleChanger.restoreOriginalState();
+
+        // Restore any app op modes changed by the tests
+        appOpsChanger.restoreAppOpModes();
+
+        // Restore settings changed by profiles, and clear their journal
+        settingsProfileManager.restore();
+
+        timings.end("shutdown");
+        // Nothing can ask for the timings anymore, so log them
+        timings.log();
     }
 }
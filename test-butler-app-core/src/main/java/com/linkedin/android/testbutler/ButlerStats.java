@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counters describing what the Test Butler service did during a test run, such as how many times
+ * it had to correct device state behind the tests' back. Reported through ButlerApi#getStats.
+ */
+public class ButlerStats {
+
+    /**
+     * Number of times animations were disabled again after something re-enabled them
+     */
+    public static final String ANIMATION_SCALE_CORRECTIONS = "animationScaleCorrections";
+
+    /**
+     * Number of times a pinned setting was written back after something else changed it
+     */
+    public static final String PINNED_SETTING_CORRECTIONS = "pinnedSettingCorrections";
+
+    /**
+     * Number of system service lookups answered from the service cache
+     */
+    public static final String SERVICE_CACHE_HITS = "serviceCacheHits";
+
+    /**
+     * Number of system service lookups which had to go through ServiceManager
+     */
+    public static final String SERVICE_CACHE_MISSES = "serviceCacheMisses";
+
+    /**
+     * Number of cached system services dropped because their process died
+     */
+    public static final String SERVICE_CACHE_EVICTIONS = "serviceCacheEvictions";
+
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+
+    /**
+     * Add one to the given counter
+     */
+    public synchronized void increment(@NonNull String name) {
+        add(name, 1);
+    }
+
+    /**
+     * Add the given amount to the given counter
+     */
+    public synchronized void add(@NonNull String name, long amount) {
+        Long value = counters.get(name);
+        counters.put(name, value == null ? amount : value + amount);
+    }
+
+    /**
+     * @return the current value of the given counter, or 0 if it was never incremented
+     */
+    public synchronized long get(@NonNull String name) {
+        Long value = counters.get(name);
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * @return a snapshot of all counters, keyed by counter name
+     */
+    @NonNull
+    public synchronized Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        for (Map.Entry<String, Long> counter : counters.entrySet()) {
+            bundle.putLong(counter.getKey(), counter.getValue());
+        }
+        return bundle;
+    }
+}
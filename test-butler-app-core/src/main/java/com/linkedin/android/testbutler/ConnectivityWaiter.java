@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.net.wifi.WifiManager;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Class that will block until wifi or mobile data connectivity reaches a given state, waking up on
+ * connectivity broadcasts and network callbacks.
+ * <p>
+ * A {@link Wait} should be started before the change is requested, so that the transition can't be
+ * missed.
+ */
+@SuppressWarnings("deprecation")
+public class ConnectivityWaiter {
+
+    private final Context context;
+    private final ConnectivityManager connectivityManager;
+    private final WifiManager wifiManager;
+
+    public ConnectivityWaiter(@NonNull Context context) {
+        this.context = context.getApplicationContext();
+        this.connectivityManager = (ConnectivityManager) this.context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        this.wifiManager = (WifiManager) this.context.getSystemService(Context.WIFI_SERVICE);
+    }
+
+    /**
+     * Start waiting for wifi to be connected to a network (enabled) or for the wifi radio to be off
+     * (disabled)
+     */
+    @NonNull
+    public Wait waitForWifi(boolean enabled) {
+        return new Wait(ConnectivityManager.TYPE_WIFI, enabled);
+    }
+
+    /**
+     * Start waiting for mobile data to be connected (enabled) or disconnected (disabled)
+     */
+    @NonNull
+    public Wait waitForMobileData(boolean enabled) {
+        return new Wait(ConnectivityManager.TYPE_MOBILE, enabled);
+    }
+
+    private boolean isConnected(int networkType) {
+        NetworkInfo networkInfo = connectivityManager.getNetworkInfo(networkType);
+        return networkInfo != null && networkInfo.isConnected();
+    }
+
+    /**
+     * A pending wait for a connectivity state, which listens for changes from the moment it is created
+     */
+    public final class Wait extends ListeningWait {
+        private final int networkType;
+        private final boolean enabled;
+        private final BroadcastReceiver receiver;
+        private ConnectivityManager.NetworkCallback networkCallback;
+
+        private Wait(int networkType, boolean enabled) {
+            this.networkType = networkType;
+            this.enabled = enabled;
+
+            receiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    check();
+                }
+            };
+            IntentFilter filter = new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION);
+            filter.addAction(WifiManager.WIFI_STATE_CHANGED_ACTION);
+            context.registerReceiver(receiver, filter);
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                registerNetworkCallback();
+            }
+        }
+
+        @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+        private void registerNetworkCallback() {
+            NetworkRequest request = new NetworkRequest.Builder()
+                    .addTransportType(networkType == ConnectivityManager.TYPE_WIFI
+                            ? NetworkCapabilities.TRANSPORT_WIFI
+                            : NetworkCapabilities.TRANSPORT_CELLULAR)
+                    .build();
+            networkCallback = new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(Network network) {
+                    check();
+                }
+
+                @Override
+                public void onLost(Network network) {
+                    check();
+                }
+            };
+            connectivityManager.registerNetworkCallback(request, networkCallback);
+        }
+
+        @Override
+        protected boolean isReached() {
+            if (networkType == ConnectivityManager.TYPE_WIFI && !enabled) {
+                return wifiManager.getWifiState() == WifiManager.WIFI_STATE_DISABLED;
+            }
+            return isConnected(networkType) == enabled;
+        }
+
+        @Override
+        protected void stopListening() {
+            context.unregisterReceiver(receiver);
+            if (networkCallback != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                connectivityManager.unregisterNetworkCallback(networkCallback);
+                networkCallback = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import android.os.Build;
+import android.os.IBinder;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.os.RemoteException;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.linkedin.android.testbutler.utils.ExceptionCreator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.getMethod;
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.invoke;
+
+/**
+ * Helper class for controlling Doze and app standby, so that devices can't defer jobs and alarms of
+ * the app under test partway through a run, which makes their latencies unpredictable.
+ * <p>
+ * Doze is controlled with the same commands as "dumpsys deviceidle", which DeviceIdleController
+ * accepts as dump arguments, and standby buckets through IUsageStatsManager. Both require privileges
+ * held by the shell user and the emulator app. DeviceIdleController only reports refused commands in
+ * its dump output, so that output is checked for every command.
+ */
+class DeviceIdleChanger {
+
+    private static final String TAG = DeviceIdleChanger.class.getSimpleName();
+
+    private static final int USER_SYSTEM = 0;
+    private static final long DUMP_TIMEOUT_MS = 5000;
+
+    // e.g. "Unable to go deep idle; not enabled", or "Permission Denial: can't dump ..."
+    private static final String[] REFUSED_REPLIES = {
+            "Unable to", "Permission Denial", "Unknown command", "Unknown option"
+    };
+    // "mDeepEnabled" since 7.0, when light idle was added, and "mEnabled" before
+    private static final Pattern DOZE_ENABLED_STATE = Pattern.compile("\\bm(?:Deep)?Enabled=(true|false)");
+
+    private final ServiceManagerWrapper serviceManager;
+    private final Map<String, Integer> originalBuckets = new LinkedHashMap<>();
+    private Boolean originalDozeEnabled;
+    private boolean forcedIdle;
+    // Our own package name, which IUsageStatsManager requires to verify the caller
+    private String callingPackage;
+
+    DeviceIdleChanger(@NonNull ServiceManagerWrapper serviceManager) {
+        this.serviceManager = serviceManager;
+    }
+
+    /**
+     * Enable or disable Doze on the device
+     *
+     * @return true if the state was changed, false on errors
+     */
+    synchronized boolean setDozeEnabled(boolean enabled) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            // There is nothing to disable before Doze was introduced
+            return true;
+        }
+        if (originalDozeEnabled == null) {
+            originalDozeEnabled = isDozeEnabled();
+        }
+        return runDeviceIdleCommand(enabled ? "enable" : "disable") != null;
+    }
+
+    /**
+     * Force the device into Doze (idle) regardless of its motion and screen state, or let it leave
+     * Doze again. Used by tests which verify behavior while the device is dozing.
+     *
+     * @return true if the state was changed, false on errors
+     */
+    synchronized boolean setForceIdle(boolean idle) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            Log.e(TAG, "Doze is not supported before 6.0");
+            return false;
+        }
+        if (runDeviceIdleCommand(idle ? "force-idle" : "unforce") == null) {
+            return false;
+        }
+        forcedIdle = idle;
+        return true;
+    }
+
+    /**
+     * Change the standby bucket of the given package, e.g. to keep the app under test ACTIVE
+     *
+     * @param bucket one of the UsageStatsManager#STANDBY_BUCKET_* constants
+     * @return true if the bucket was set, false on errors
+     */
+    synchronized boolean setAppStandbyBucket(@NonNull String packageName, int bucket) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.P) {
+            Log.e(TAG, "App standby buckets are not supported before 9.0");
+            return false;
+        }
+        try {
+            Object usageStatsManager = serviceManager.getIService("usagestats", "android.app.usage.IUsageStatsManager");
+            if (!originalBuckets.containsKey(packageName)) {
+                originalBuckets.put(packageName, (Integer) invoke(getMethod(usageStatsManager.getClass(),
+                        "getAppStandbyBucket", String.class, String.class, int.class), usageStatsManager,
+                        packageName, getCallingPackage(), USER_SYSTEM));
+            }
+            invoke(getMethod(usageStatsManager.getClass(), "setAppStandbyBucket", String.class, int.class, int.class),
+                    usageStatsManager, packageName, bucket, USER_SYSTEM);
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to set standby bucket of " + packageName, e);
+            return false;
+        }
+    }
+
+    /**
+     * Should be called after testing completes, to undo any Doze and standby bucket changes
+     */
+    synchronized void restoreOriginalState() {
+        if (forcedIdle) {
+            setForceIdle(false);
+        }
+        if (originalDozeEnabled != null) {
+            setDozeEnabled(originalDozeEnabled);
+            originalDozeEnabled = null;
+        }
+        for (Map.Entry<String, Integer> entry : new LinkedHashMap<>(originalBuckets).entrySet()) {
+            setAppStandbyBucket(entry.getKey(), entry.getValue());
+        }
+        originalBuckets.clear();
+    }
+
+    /**
+     * @return the package name of this process (e.g. "com.android.shell" when running as the shell user),
+     * looked up the first time it is needed
+     */
+    @NonNull
+    private String getCallingPackage() throws RemoteException {
+        if (callingPackage == null) {
+            Object packageManager = serviceManager.getIService("package", "android.content.pm.IPackageManager");
+            String[] packages = (String[]) invoke(getMethod(packageManager.getClass(), "getPackagesForUid", int.class),
+                    packageManager, Process.myUid());
+            if (packages == null || packages.length == 0) {
+                throw ExceptionCreator.createRemoteException(TAG, "No package found for uid " + Process.myUid(), null);
+            }
+            callingPackage = packages[0];
+        }
+        return callingPackage;
+    }
+
+    /**
+     * @return whether Doze is currently enabled, according to the state dumped by DeviceIdleController.
+     * Assumes it is, since that's the default, if the state can't be read.
+     */
+    private boolean isDozeEnabled() {
+        String state = runDeviceIdleCommand();
+        Matcher matcher = state != null ? DOZE_ENABLED_STATE.matcher(state) : null;
+        if (matcher == null || !matcher.find()) {
+            Log.w(TAG, "Could not read the current Doze state, assuming it is enabled");
+            return true;
+        }
+        return Boolean.parseBoolean(matcher.group(1));
+    }
+
+    /**
+     * Run a "dumpsys deviceidle" command
+     *
+     * @return the reply of DeviceIdleController, or null if the command failed or was refused
+     */
+    @Nullable
+    private String runDeviceIdleCommand(@NonNull String... args) {
+        String command = args.length > 0 ? args[0] : "dump";
+        ParcelFileDescriptor[] pipe = null;
+        try {
+            IBinder deviceIdle = serviceManager.getBinder("deviceidle");
+            pipe = ParcelFileDescriptor.createPipe();
+            // Read the reply while dumping, so a reply larger than the pipe buffer can't block the dump
+            final InputStream replyStream = new ParcelFileDescriptor.AutoCloseInputStream(pipe[0]);
+            pipe[0] = null;
+            FutureTask<String> reply = new FutureTask<>(new Callable<String>() {
+                @Override
+                public String call() throws IOException {
+                    try {
+                        return readFully(replyStream);
+                    } finally {
+                        replyStream.close();
+                    }
+                }
+            });
+            new Thread(reply, "ButlerDeviceIdleReply").start();
+
+            deviceIdle.dump(pipe[1].getFileDescriptor(), args);
+            // Closing our end of the pipe lets the reader see the end of the reply
+            pipe[1].close();
+            pipe[1] = null;
+
+            String output = reply.get(DUMP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            for (String refused : REFUSED_REPLIES) {
+                // A plain dump (no command) lists the whole state, so only command replies are checked
+                if (args.length > 0 && output.contains(refused)) {
+                    Log.e(TAG, "deviceidle command " + command + " was refused: " + output.trim());
+                    return null;
+                }
+            }
+            return output;
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to run deviceidle command: " + command, e);
+            return null;
+        } finally {
+            if (pipe != null) {
+                closeQuietly(pipe[0]);
+                closeQuietly(pipe[1]);
+            }
+        }
+    }
+
+    @NonNull
+    private static String readFully(@NonNull InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toString("UTF-8");
+    }
+
+    private static void closeQuietly(@Nullable ParcelFileDescriptor fd) {
+        if (fd != null) {
+            try {
+                fd.close();
+            } catch (IOException ignored) { }
+        }
+    }
+}
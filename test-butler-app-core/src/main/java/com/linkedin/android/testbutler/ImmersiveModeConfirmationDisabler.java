@@ -54,6 +54,11 @@ class ImmersiveModeConfirmationDisabler {
         }
     }
 
+    boolean isEnabled() {
+        return immersiveModeConfirmationKey == null
+                || !TextUtils.equals(settings.secure().getString(immersiveModeConfirmationKey), SETTING_VALUE_CONFIRMED);
+    }
+
     boolean setState(boolean enabled) {
         if (immersiveModeConfirmationKey != null) {
             settings.secure().putString(immersiveModeConfirmationKey, enabled ? "" : SETTING_VALUE_CONFIRMED);
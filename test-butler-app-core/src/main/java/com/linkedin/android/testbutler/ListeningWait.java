@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link PendingChange} which listens for the change from the moment it is created, and wakes up
+ * as soon as a listener sees it take effect instead of polling. Listening needs a Context, so waits
+ * must run in the Test Butler app process rather than as the shell user.
+ */
+public abstract class ListeningWait implements PendingChange {
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private boolean cancelled;
+
+    /**
+     * @return true if the change has taken effect
+     */
+    protected abstract boolean isReached();
+
+    /**
+     * Unregister every listener registered by the subclass. Only called once.
+     */
+    protected abstract void stopListening();
+
+    /**
+     * Should be called by the listeners whenever the state they observe may have changed
+     */
+    protected final void check() {
+        if (isReached()) {
+            latch.countDown();
+        }
+    }
+
+    @Override
+    public final boolean await(long timeoutMs) {
+        try {
+            // The change may already have taken effect before any listener was called
+            check();
+            return latch.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            cancel();
+        }
+    }
+
+    @Override
+    public final synchronized void cancel() {
+        if (!cancelled) {
+            cancelled = true;
+            stopListening();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import android.content.BroadcastReceiver;
+import android.content.ComponentCallbacks;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.res.Configuration;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * Class that will block until a device locale change has been delivered to apps.
+ * <p>
+ * A {@link Wait} should be started before the locale is changed, so that the change can't be missed.
+ */
+public class LocaleWaiter {
+
+    private final Context context;
+
+    public LocaleWaiter(@NonNull Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Start waiting for the device locale to be the given locale
+     */
+    @NonNull
+    public Wait waitForLocale(@NonNull Locale locale) {
+        return new Wait(locale);
+    }
+
+    /**
+     * A pending wait for a locale change, which listens for changes from the moment it is created
+     */
+    public final class Wait extends ListeningWait {
+        private final Locale locale;
+        private final ComponentCallbacks componentCallbacks;
+        private final BroadcastReceiver receiver;
+
+        private Wait(@NonNull Locale locale) {
+            this.locale = locale;
+
+            componentCallbacks = new ComponentCallbacks() {
+                @Override
+                public void onConfigurationChanged(Configuration newConfig) {
+                    check();
+                }
+
+                @Override
+                public void onLowMemory() {
+                }
+            };
+            context.registerComponentCallbacks(componentCallbacks);
+
+            // Sent after the configuration change, once every running app has been told about it
+            receiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    check();
+                }
+            };
+            context.registerReceiver(receiver, new IntentFilter(Intent.ACTION_LOCALE_CHANGED));
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        protected boolean isReached() {
+            Configuration configuration = context.getResources().getConfiguration();
+            Locale current = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+                    ? configuration.getLocales().get(0)
+                    : configuration.locale;
+            return locale.equals(current);
+        }
+
+        @Override
+        protected void stopListening() {
+            context.unregisterComponentCallbacks(componentCallbacks);
+            context.unregisterReceiver(receiver);
+        }
+    }
+}
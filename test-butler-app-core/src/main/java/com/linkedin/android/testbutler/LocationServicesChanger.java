@@ -71,6 +71,21 @@ class LocationServicesChanger {
         }
     }
 
+    /**
+     * @return the current location mode, or -1 if it could not be read (always the case before KitKat)
+     */
+    int getLocationMode() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+            return -1;
+        }
+        try {
+            return settings.secure().getInt(Settings.Secure.LOCATION_MODE);
+        } catch (Settings.SettingNotFoundException e) {
+            Log.e(TAG, "Error reading location mode settings!", e);
+            return -1;
+        }
+    }
+
     /**
      * Set a custom location mode
      *
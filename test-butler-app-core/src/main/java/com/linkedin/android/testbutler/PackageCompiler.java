@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import android.os.Build;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.getMethod;
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.invoke;
+
+/**
+ * Helper class for compiling a package ahead of time, like "cmd package compile -m speed -f", so
+ * that early tests don't run interpreted or while the JIT is still warming up.
+ */
+class PackageCompiler {
+
+    private static final String TAG = PackageCompiler.class.getSimpleName();
+
+    private static final Class<?>[][] PERFORM_DEX_OPT_MODE_PARAMETERS = {
+            {String.class, boolean.class, String.class, boolean.class, boolean.class, String.class},
+            {String.class, boolean.class, String.class, boolean.class, boolean.class},
+            {String.class, boolean.class, String.class, boolean.class},
+    };
+
+    private final ServiceManagerWrapper serviceManager;
+
+    PackageCompiler(@NonNull ServiceManagerWrapper serviceManager) {
+        this.serviceManager = serviceManager;
+    }
+    /**
+     * Compile the given package with the given compiler filter, blocking until it's done
+     *
+     * @param compilerFilter an ART compiler filter, e.g. "speed" or "speed-profile"
+     * @return the time compilation took in milliseconds, or -1 on errors
+     */
+    long compilePackage(@NonNull String packageName, @NonNull String compilerFilter) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            Log.e(TAG, "Compiling packages on demand is not supported before 7.0");
+            return -1;
+        }
+        try {
+            Object packageManager = serviceManager.getIService("package", "android.content.pm.IPackageManager");
+            Method performDexOptMode = null;
+            Object[] args = null;
+            // The method gained parameters over time:
+            // (packageName, checkProfiles, targetCompilerFilter, force[, bootComplete[, splitName]])
+            for (Class<?>[] parameterTypes : PERFORM_DEX_OPT_MODE_PARAMETERS) {
+                try {
+                    performDexOptMode = getMethod(packageManager.getClass(), "performDexOptMode", parameterTypes);
+                } catch (RemoteException e) {
+                    continue;
+                }
+                args = Arrays.copyOf(new Object[]{packageName, false, compilerFilter, true, true, null},
+                        parameterTypes.length);
+                break;
+            }
+            if (performDexOptMode == null) {
+                Log.e(TAG, "IPackageManager#performDexOptMode is not available on this device");
+                return -1;
+            }
+
+            long start = SystemClock.elapsedRealtime();
+            boolean success = (Boolean) invoke(performDexOptMode, packageManager, args);
+            long elapsed = SystemClock.elapsedRealtime() - start;
+            if (!success) {
+                Log.e(TAG, "Failed to compile " + packageName + " with filter " + compilerFilter);
+                return -1;
+            }
+            Log.d(TAG, String.format("Compiled %s with filter %s in %d ms", packageName, compilerFilter, elapsed));
+            return elapsed;
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to compile " + packageName, e);
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import android.os.Binder;
+import android.os.Build;
+import android.os.IBinder;
+import android.os.Parcel;
+import android.os.RemoteException;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.classForName;
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.getMethod;
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.invoke;
+
+/**
+ * Helper class for clearing the data of a package and force stopping it, like "pm clear" and
+ * "am force-stop" do, but without the cost of spawning a process over adb for each test.
+ */
+class PackageResetter {
+
+    private static final String TAG = PackageResetter.class.getSimpleName();
+
+    private static final int USER_SYSTEM = 0;
+    private static final long CLEAR_TIMEOUT_MS = 30000;
+
+    private static final String PACKAGE_DATA_OBSERVER = "android.content.pm.IPackageDataObserver";
+
+    private final ServiceManagerWrapper serviceManager;
+
+    PackageResetter(@NonNull ServiceManagerWrapper serviceManager) {
+        this.serviceManager = serviceManager;
+    }
+    /**
+     * Clear the data of the given package, killing its processes, and wait until it's done
+     *
+     * @return true if the data was cleared, false on errors
+     */
+    boolean clearApplicationData(@NonNull String packageName) {
+        try {
+            Object activityManager = serviceManager.getActivityManager();
+            Class<?> observerClass = classForName(PACKAGE_DATA_OBSERVER);
+            DataObserver observer = new DataObserver();
+            Object observerProxy = observer.asInterface(observerClass);
+
+            boolean started;
+            // Same as "pm clear", which goes through the activity manager so the app is killed first
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+                Method clear = getMethod(activityManager.getClass(), "clearApplicationUserData",
+                        String.class, boolean.class, observerClass, int.class);
+                started = (Boolean) invoke(clear, activityManager, packageName, false, observerProxy, USER_SYSTEM);
+            } else {
+                Method clear = getMethod(activityManager.getClass(), "clearApplicationUserData",
+                        String.class, observerClass, int.class);
+                started = (Boolean) invoke(clear, activityManager, packageName, observerProxy, USER_SYSTEM);
+            }
+            if (!started) {
+                Log.e(TAG, "Clearing data of " + packageName + " was refused");
+                return false;
+            }
+            if (!observer.latch.await(CLEAR_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                Log.e(TAG, "Timed out clearing data of " + packageName);
+                return false;
+            }
+            return observer.succeeded;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to clear data of " + packageName, e);
+            return false;
+        }
+    }
+
+    /**
+     * Force stop the given package, like "am force-stop"
+     *
+     * @return true if the package was stopped, false on errors
+     */
+    boolean forceStopPackage(@NonNull String packageName) {
+        try {
+            Object activityManager = serviceManager.getActivityManager();
+            invoke(getMethod(activityManager.getClass(), "forceStopPackage", String.class, int.class),
+                    activityManager, packageName, USER_SYSTEM);
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to force stop " + packageName, e);
+            return false;
+        }
+    }
+
+    /**
+     * An IPackageDataObserver implemented directly on a Binder, since the hidden AIDL stub can't be
+     * subclassed at compile time
+     */
+    private static class DataObserver extends Binder {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile boolean succeeded;
+
+        DataObserver() {
+            attachInterface(null, PACKAGE_DATA_OBSERVER);
+        }
+
+        /**
+         * @return a proxy implementing the given IPackageDataObserver interface, backed by this Binder
+         */
+        Object asInterface(@NonNull Class<?> observerClass) {
+            return Proxy.newProxyInstance(observerClass.getClassLoader(), new Class<?>[]{observerClass},
+                    new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            if ("asBinder".equals(method.getName())) {
+                                return DataObserver.this;
+                            }
+                            if ("onRemoveCompleted".equals(method.getName())) {
+                                onRemoveCompleted((Boolean) args[1]);
+                                return null;
+                            }
+                            if (method.getDeclaringClass() == Object.class) {
+                                if ("equals".equals(method.getName())) {
+                                    return proxy == args[0];
+                                }
+                                return method.invoke(DataObserver.this, args);
+                            }
+                            Log.w(TAG, "Ignoring unexpected IPackageDataObserver call: " + method.getName());
+                            return null;
+                        }
+                    });
+        }
+
+        private void onRemoveCompleted(boolean succeeded) {
+            this.succeeded = succeeded;
+            latch.countDown();
+        }
+
+        @Override
+        protected boolean onTransact(int code, @NonNull Parcel data, Parcel reply, int flags)
+                throws RemoteException {
+            // onRemoveCompleted(String packageName, boolean succeeded) is the only method
+            if (code == IBinder.FIRST_CALL_TRANSACTION) {
+                data.enforceInterface(PACKAGE_DATA_OBSERVER);
+                data.readString();
+                onRemoveCompleted(data.readInt() != 0);
+                return true;
+            }
+            return super.onTransact(code, data, reply, flags);
+        }
+    }
+}
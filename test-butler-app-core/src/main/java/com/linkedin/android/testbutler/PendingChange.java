@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+/**
+ * A device state change which has been requested but may still be propagating, such as a
+ * connectivity transition or a display rotation
+ */
+public interface PendingChange {
+
+    /**
+     * Block until the change has taken effect, then stop listening for it
+     *
+     * @return true if the change took effect before the timeout
+     */
+    boolean await(long timeoutMs);
+
+    /**
+     * Stop listening for the change without waiting for it
+     */
+    void cancel();
+}
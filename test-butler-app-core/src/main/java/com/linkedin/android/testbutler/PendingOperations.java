@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import android.os.RemoteCallbackList;
+import android.os.RemoteException;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Keeps track of device state changes which are still propagating after the ButlerApi call that
+ * requested them returned, and tells registered {@link ButlerIdleCallback}s when the last one has
+ * settled. This backs the IdlingResource in the Test Butler library.
+ */
+public class PendingOperations {
+
+    private static final String TAG = PendingOperations.class.getSimpleName();
+
+    // A change that hasn't settled by then most likely never will (e.g. wifi with no network to join)
+    private static final long SETTLE_TIMEOUT_MS = 10000;
+
+    private final RemoteCallbackList<ButlerIdleCallback> callbacks = new RemoteCallbackList<>();
+
+    private int pending;
+
+    /**
+     * Count the given change as in flight until it has taken effect (or timed out)
+     */
+    public void track(@NonNull final PendingChange change) {
+        synchronized (this) {
+            pending++;
+        }
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                if (!change.await(SETTLE_TIMEOUT_MS)) {
+                    Log.w(TAG, "Change did not settle within " + SETTLE_TIMEOUT_MS + "ms");
+                }
+                finished();
+            }
+        }, "ButlerPendingChange");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return true if no tracked change is in flight
+     */
+    public synchronized boolean isIdle() {
+        return pending == 0;
+    }
+
+    public void registerIdleCallback(@NonNull ButlerIdleCallback callback) {
+        callbacks.register(callback);
+    }
+
+    public void unregisterIdleCallback(@NonNull ButlerIdleCallback callback) {
+        callbacks.unregister(callback);
+    }
+
+    /**
+     * Drop all registered callbacks, should be called when the service is destroyed
+     */
+    public void kill() {
+        callbacks.kill();
+    }
+
+    private void finished() {
+        synchronized (this) {
+            pending--;
+            if (pending > 0) {
+                return;
+            }
+        }
+        synchronized (callbacks) {
+            int count = callbacks.beginBroadcast();
+            try {
+                for (int i = 0; i < count; i++) {
+                    try {
+                        callbacks.getBroadcastItem(i).onIdle();
+                    } catch (RemoteException e) {
+                        // The RemoteCallbackList removes dead callbacks by itself
+                        Log.w(TAG, "Failed to notify idle callback", e);
+                    }
+                }
+            } finally {
+                callbacks.finishBroadcast();
+            }
+        }
+    }
+}
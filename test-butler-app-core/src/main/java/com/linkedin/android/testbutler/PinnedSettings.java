@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import android.database.ContentObserver;
+import android.os.Bundle;
+import android.os.Handler;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps a set of settings at fixed values while tests are running, writing them back whenever
+ * something else (e.g. an OEM system app, or the system reacting to a sensor) changes them.
+ * <p>
+ * Each namespace with pinned settings gets a single observer on the whole namespace, and a burst of
+ * change notifications is coalesced into one pass which only writes the settings that drifted.
+ * The value each setting had before it was first pinned is restored by {@link #restore()}.
+ */
+class PinnedSettings {
+
+    private static final String TAG = PinnedSettings.class.getSimpleName();
+
+    // Settings changes tend to arrive in bursts, so wait a little before checking the pinned values
+    private static final long COALESCE_DELAY_MS = 50;
+
+    private final SettingsAccessor settings;
+    private final Handler handler;
+    private final ButlerStats stats;
+    private final Map<String, PinnedNamespace> namespaces = new HashMap<>();
+
+    PinnedSettings(@NonNull SettingsAccessor settings, @NonNull Handler handler, @NonNull ButlerStats stats) {
+        this.settings = settings;
+        this.handler = handler;
+        this.stats = stats;
+    }
+
+    /**
+     * Set the given settings and keep them at these values until they are unpinned
+     *
+     * @param name      The name of the namespace, see {@link SettingsNamespaces}
+     * @param namespace The namespace the settings live in
+     * @param values    The values to pin, as strings keyed by setting name
+     * @return true if all settings were written and are being watched
+     */
+    synchronized boolean pin(@NonNull String name, @NonNull SettingsAccessor.Namespace namespace,
+                             @NonNull Bundle values) {
+        PinnedNamespace pinnedNamespace = namespaces.get(name);
+        if (pinnedNamespace == null) {
+            pinnedNamespace = new PinnedNamespace(name, namespace);
+            namespaces.put(name, pinnedNamespace);
+        }
+
+        boolean success = true;
+        for (String key : values.keySet()) {
+            String value = values.getString(key);
+            if (!pinnedNamespace.originals.containsKey(key)) {
+                pinnedNamespace.originals.put(key, namespace.getString(key));
+            }
+            pinnedNamespace.pinned.put(key, value);
+            if (!TextUtils.equals(namespace.getString(key), value)) {
+                success = namespace.putString(key, value) && success;
+            }
+        }
+        return pinnedNamespace.startWatching() && success;
+    }
+
+    /**
+     * Stop keeping the given settings at their pinned values. Their current values are left as is,
+     * the original values are still restored by {@link #restore()}.
+     *
+     * @param name The name of the namespace, see {@link SettingsNamespaces}
+     * @param keys The settings to unpin, or null to unpin every setting in the namespace
+     */
+    synchronized void unpin(@NonNull String name, @Nullable String[] keys) {
+        PinnedNamespace pinnedNamespace = namespaces.get(name);
+        if (pinnedNamespace == null) {
+            return;
+        }
+        if (keys == null) {
+            pinnedNamespace.pinned.clear();
+        } else {
+            for (String key : keys) {
+                pinnedNamespace.pinned.remove(key);
+            }
+        }
+        if (pinnedNamespace.pinned.isEmpty()) {
+            pinnedNamespace.stopWatching();
+        }
+    }
+
+    /**
+     * Unpin everything and restore every setting that was ever pinned to its original value
+     */
+    synchronized void restore() {
+        for (PinnedNamespace pinnedNamespace : namespaces.values()) {
+            pinnedNamespace.pinned.clear();
+            pinnedNamespace.stopWatching();
+            for (Map.Entry<String, String> original : pinnedNamespace.originals.entrySet()) {
+                String key = original.getKey();
+                if (!TextUtils.equals(pinnedNamespace.namespace.getString(key), original.getValue())) {
+                    pinnedNamespace.namespace.putString(key, original.getValue());
+                }
+            }
+        }
+        namespaces.clear();
+    }
+
+    private synchronized void reassert(@NonNull PinnedNamespace pinnedNamespace) {
+        for (Map.Entry<String, String> entry : pinnedNamespace.pinned.entrySet()) {
+            String key = entry.getKey();
+            String value = entry.getValue();
+            if (TextUtils.equals(pinnedNamespace.namespace.getString(key), value)) {
+                continue;
+            }
+            Log.d(TAG, String.format("Setting %s.%s changed, pinning it back to %s",
+                    pinnedNamespace.name, key, value));
+            if (pinnedNamespace.namespace.putString(key, value)) {
+                stats.increment(ButlerStats.PINNED_SETTING_CORRECTIONS);
+            } else {
+                Log.e(TAG, "Failed to pin " + pinnedNamespace.name + "." + key);
+            }
+        }
+    }
+
+    private final class PinnedNamespace {
+        private final String name;
+        private final SettingsAccessor.Namespace namespace;
+        private final Map<String, String> pinned = new LinkedHashMap<>();
+        private final Map<String, String> originals = new LinkedHashMap<>();
+        private final Runnable reassertRunnable;
+        private final ContentObserver observer;
+
+        private boolean watching;
+
+        private PinnedNamespace(@NonNull String name, @NonNull SettingsAccessor.Namespace namespace) {
+            this.name = name;
+            this.namespace = namespace;
+            this.reassertRunnable = new Runnable() {
+                @Override
+                public void run() {
+                    reassert(PinnedNamespace.this);
+                }
+            };
+            this.observer = new ContentObserver(handler) {
+                @Override
+                public void onChange(boolean selfChange) {
+                    // Our own writes land here too, but by then the values match and nothing is written
+                    handler.removeCallbacks(reassertRunnable);
+                    handler.postDelayed(reassertRunnable, COALESCE_DELAY_MS);
+                }
+            };
+        }
+
+        private boolean startWatching() {
+            if (watching) {
+                return true;
+            }
+            if (!settings.registerContentObserver(namespace.getUri(), true, observer)) {
+                Log.e(TAG, "Failed to watch " + name + " settings, pinned settings will not be enforced");
+                return false;
+            }
+            watching = true;
+            return true;
+        }
+
+        private void stopWatching() {
+            if (watching) {
+                settings.unregisterContentObserver(observer);
+                handler.removeCallbacks(reassertRunnable);
+                watching = false;
+            }
+        }
+    }
+}
@@ -70,6 +70,18 @@ class RotationChanger {
         settings.system().putInt(Settings.System.USER_ROTATION, originalUserRotation);
     }
 
+    /**
+     * @return the current user rotation, or -1 if it could not be read
+     */
+    int getRotation() {
+        try {
+            return settings.system().getInt(Settings.System.USER_ROTATION);
+        } catch (Settings.SettingNotFoundException e) {
+            Log.d(TAG, "Could not read user rotation setting: " + e.getMessage());
+            return -1;
+        }
+    }
+
     /**
      * Set a custom device rotation
      *
@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.hardware.display.DisplayManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.DisplayMetrics;
+import android.view.Display;
+import android.view.WindowManager;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Class that will block until the display has rotated to a given rotation and the resulting
+ * configuration change has been delivered.
+ * <p>
+ * A {@link Wait} should be started before the rotation is requested, so that the change can't be
+ * missed.
+ */
+public class RotationWaiter {
+
+    private final Context context;
+    private final Display display;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    public RotationWaiter(@NonNull Context context) {
+        this.context = context.getApplicationContext();
+        WindowManager windowManager = (WindowManager) this.context.getSystemService(Context.WINDOW_SERVICE);
+        this.display = windowManager.getDefaultDisplay();
+    }
+
+    /**
+     * Start waiting for the display to have the given rotation
+     *
+     * @param rotation One of the Surface.ROTATION_* constants
+     */
+    @NonNull
+    public Wait waitForRotation(int rotation) {
+        return new Wait(rotation);
+    }
+
+    /**
+     * A pending wait for a display rotation, which listens for changes from the moment it is created
+     */
+    public final class Wait extends ListeningWait {
+        private final int rotation;
+        private final ComponentCallbacks componentCallbacks;
+        private Object displayListener;
+
+        private Wait(int rotation) {
+            this.rotation = rotation;
+
+            componentCallbacks = new ComponentCallbacks() {
+                @Override
+                public void onConfigurationChanged(Configuration newConfig) {
+                    check();
+                }
+
+                @Override
+                public void onLowMemory() {
+                }
+            };
+            context.registerComponentCallbacks(componentCallbacks);
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                registerDisplayListener();
+            }
+        }
+
+        @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+        private void registerDisplayListener() {
+            DisplayManager.DisplayListener listener = new DisplayManager.DisplayListener() {
+                @Override
+                public void onDisplayAdded(int displayId) {
+                }
+
+                @Override
+                public void onDisplayRemoved(int displayId) {
+                }
+
+                @Override
+                public void onDisplayChanged(int displayId) {
+                    if (displayId == display.getDisplayId()) {
+                        check();
+                    }
+                }
+            };
+            DisplayManager displayManager = (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+            displayManager.registerDisplayListener(listener, handler);
+            displayListener = listener;
+        }
+
+        @Override
+        protected boolean isReached() {
+            return display.getRotation() == rotation && isConfigurationUpdated();
+        }
+
+        private boolean isConfigurationUpdated() {
+            DisplayMetrics metrics = new DisplayMetrics();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                display.getRealMetrics(metrics);
+            } else {
+                display.getMetrics(metrics);
+            }
+            if (metrics.widthPixels == metrics.heightPixels) {
+                // A square display has no orientation to wait for
+                return true;
+            }
+            int orientation = metrics.widthPixels > metrics.heightPixels
+                    ? Configuration.ORIENTATION_LANDSCAPE
+                    : Configuration.ORIENTATION_PORTRAIT;
+            return context.getResources().getConfiguration().orientation == orientation;
+        }
+
+        @Override
+        protected void stopListening() {
+            context.unregisterComponentCallbacks(componentCallbacks);
+            if (displayListener != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                DisplayManager displayManager = (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+                displayManager.unregisterDisplayListener((DisplayManager.DisplayListener) displayListener);
+                displayListener = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.IBinder;
+import android.os.RemoteException;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.linkedin.android.testbutler.utils.ExceptionCreator;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.classForName;
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.getMethod;
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.invoke;
+
+
+/**
+ * A wrapper to expose hidden APIs in ServiceManager via reflection, which works both in the Test
+ * Butler app (as a system app on emulators) and in ShellButlerService (as the shell user).
+ * <p>
+ * Service binders are cached per service name, since most operations fetch the same service over
+ * and over. Entries are evicted when the remote binder dies (e.g. the system process restarts).
+ * Cache hits, misses and evictions are counted in the {@link ButlerStats} reported by the ButlerApi.
+ */
+public class ServiceManagerWrapper {
+
+    private static final String TAG = ServiceManagerWrapper.class.getSimpleName();
+
+    private final Method getService;
+    private final ButlerStats stats;
+    private final Map<String, CachedService> services = new HashMap<>();
+
+    /**
+     * @param getService ServiceManager#getService, or an equivalent static method in tests
+     */
+    ServiceManagerWrapper(@NonNull Method getService, @NonNull ButlerStats stats) {
+        this.getService = getService;
+        this.stats = stats;
+    }
+
+    /**
+     * Like ServiceManager#getService
+     * @param name The name of the service to fetch (See constants in {@link Context})
+     * @return The Binder of the service
+     * @throws RemoteException if the given service does not exist
+     */
+    @NonNull
+    public IBinder getBinder(@NonNull String name) throws RemoteException {
+        return getCachedService(name).binder;
+    }
+
+    /**
+     * Like ServiceManager#getService, but automatically wraps the returned generic Binder via the
+     * given AIDL stub class's "asInterface(Binder)" method.
+     * @param name The name of the service to fetch (See constants in {@link Context})
+     * @param serviceClassName The fully qualified name of the (typically hidden) generated AIDL
+     *                         class (e.g. "android.net.IConnectivityManager")
+     * @return A proxy instance of the given service class.
+     * @throws RemoteException if the given service does not exist
+     */
+    @NonNull
+    public Object getIService(@NonNull String name, @NonNull String serviceClassName) throws RemoteException {
+        return getProxy(name, serviceClassName + "$Stub");
+    }
+
+    /**
+     * @return the IActivityManager proxy
+     */
+    @NonNull
+    public Object getActivityManager() throws RemoteException {
+        // IActivityManager is only generated from AIDL since Android O, ActivityManagerNative
+        // converted its binders before
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            return getIService(Context.ACTIVITY_SERVICE, "android.app.IActivityManager");
+        }
+        return getProxy(Context.ACTIVITY_SERVICE, "android.app.ActivityManagerNative");
+    }
+
+    @NonNull
+    private Object getProxy(@NonNull String name, @NonNull String stubClassName) throws RemoteException {
+        CachedService cached = getCachedService(name);
+        synchronized (this) {
+            Object proxy = cached.proxies.get(stubClassName);
+            if (proxy == null) {
+                Method asInterface = getMethod(classForName(stubClassName), "asInterface", IBinder.class);
+                proxy = invoke(asInterface, null, cached.binder);
+                cached.proxies.put(stubClassName, proxy);
+            }
+            return proxy;
+        }
+    }
+
+    @NonNull
+    private CachedService getCachedService(@NonNull String name) throws RemoteException {
+        synchronized (this) {
+            CachedService cached = services.get(name);
+            if (cached != null) {
+                stats.increment(ButlerStats.SERVICE_CACHE_HITS);
+                return cached;
+            }
+            stats.increment(ButlerStats.SERVICE_CACHE_MISSES);
+        }
+
+        Object binder = invoke(getService, null, name);
+        if (binder == null) {
+            throw ExceptionCreator.createRemoteException(TAG, "No service " + name + " found on device", null);
+        }
+
+        CachedService cached = new CachedService(name, (IBinder) binder);
+        try {
+            cached.binder.linkToDeath(cached, 0);
+        } catch (RemoteException e) {
+            // The service died in the meantime, so don't cache it
+            Log.w(TAG, "Service " + name + " died before it could be cached");
+            return cached;
+        }
+        synchronized (this) {
+            CachedService previous = services.put(name, cached);
+            if (previous != null) {
+                previous.binder.unlinkToDeath(previous, 0);
+            }
+        }
+        return cached;
+    }
+
+    private synchronized void evict(@NonNull CachedService cached) {
+        if (services.get(cached.name) == cached) {
+            services.remove(cached.name);
+            stats.increment(ButlerStats.SERVICE_CACHE_EVICTIONS);
+            Log.d(TAG, "Service " + cached.name + " died, evicted it from the cache");
+        }
+    }
+
+    /**
+     * @param stats The counters to record cache hits, misses and evictions in
+     */
+    @NonNull
+    public static ServiceManagerWrapper newInstance(@NonNull ButlerStats stats) {
+        try {
+            Class<?> serviceManagerClass = classForName("android.os.ServiceManager");
+            Method getService = getMethod(serviceManagerClass, "getService", String.class);
+            return new ServiceManagerWrapper(getService, stats);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to initialize ServiceManagerWrapper", e);
+        }
+    }
+
+    private final class CachedService implements IBinder.DeathRecipient {
+        private final String name;
+        private final IBinder binder;
+        // Proxies of the binder keyed by the stub class which created them, guarded by the wrapper
+        private final Map<String, Object> proxies = new HashMap<>();
+
+        private CachedService(@NonNull String name, @NonNull IBinder binder) {
+            this.name = name;
+            this.binder = binder;
+        }
+
+        @Override
+        public void binderDied() {
+            evict(this);
+        }
+    }
+}
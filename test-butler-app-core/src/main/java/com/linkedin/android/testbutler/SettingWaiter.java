@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import android.database.ContentObserver;
+import android.os.Handler;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blocks until a setting has an expected value, waking up as soon as the setting changes instead of
+ * polling it
+ */
+class SettingWaiter {
+
+    private static final String TAG = SettingWaiter.class.getSimpleName();
+
+    private final SettingsAccessor settings;
+    private final Handler handler;
+
+    SettingWaiter(@NonNull SettingsAccessor settings, @NonNull Handler handler) {
+        this.settings = settings;
+        this.handler = handler;
+    }
+
+    /**
+     * Wait until the given setting has the expected value
+     *
+     * @param namespace     The namespace the setting lives in
+     * @param key           The name of the setting
+     * @param expectedValue The value to wait for, or null to wait for the setting to be removed
+     * @param timeoutMs     The maximum time to wait, in milliseconds
+     * @return true if the setting had the expected value before the timeout
+     */
+    boolean awaitSetting(@NonNull final SettingsAccessor.Namespace namespace, @NonNull final String key,
+                         @Nullable final String expectedValue, long timeoutMs) {
+        if (TextUtils.equals(namespace.getString(key), expectedValue)) {
+            return true;
+        }
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        ContentObserver observer = new ContentObserver(handler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                if (TextUtils.equals(namespace.getString(key), expectedValue)) {
+                    latch.countDown();
+                }
+            }
+        };
+        if (!settings.registerContentObserver(namespace.getUriFor(key), false, observer)) {
+            Log.e(TAG, "Failed to watch setting " + key);
+            return false;
+        }
+        try {
+            // The setting may have changed before the observer was registered
+            if (TextUtils.equals(namespace.getString(key), expectedValue)) {
+                return true;
+            }
+            return latch.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            settings.unregisterContentObserver(observer);
+        }
+    }
+}
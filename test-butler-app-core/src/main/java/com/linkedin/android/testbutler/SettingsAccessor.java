@@ -15,6 +15,8 @@
  */
 package com.linkedin.android.testbutler;
 
+import android.database.ContentObserver;
+import android.net.Uri;
 import android.provider.Settings;
 
 import androidx.annotation.NonNull;
@@ -43,6 +45,23 @@ public interface SettingsAccessor {
     @NonNull
     Namespace secure();
 
+    /**
+     * Register an observer which is called when the setting identified by the given uri changes.
+     *
+     * @param uri The uri of the setting to watch, see {@link Namespace#getUriFor(String)} and
+     *            {@link Namespace#getUri()}
+     * @param notifyForDescendants If true, changes to uris beginning with uri also trigger the observer
+     * @param observer The observer to notify
+     * @return true if the observer was registered, false otherwise
+     */
+    boolean registerContentObserver(@NonNull Uri uri, boolean notifyForDescendants,
+                                    @NonNull ContentObserver observer);
+
+    /**
+     * Unregister an observer previously registered with {@link #registerContentObserver}
+     */
+    void unregisterContentObserver(@NonNull ContentObserver observer);
+
     /**
      * Accessor for a specific {@link Settings} namespace (one of {@link Settings.Global},
      * {@link Settings.System}, or {@link Settings.Secure}).
@@ -53,5 +72,11 @@ public interface SettingsAccessor {
         boolean putString(@NonNull String key, @Nullable String value);
         int getInt(@NonNull String key) throws Settings.SettingNotFoundException;
         boolean putInt(@NonNull String key, int value);
+        @NonNull
+        Uri getUri();
+        @NonNull
+        Uri getUriFor(@NonNull String key);
+        @Nullable
+        SettingsSnapshot snapshot();
     }
 }
@@ -0,0 +1,228 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.provider.Settings;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link SettingsAccessor} which wraps another accessor and keeps track of every setting written
+ * through it after {@link #checkpoint()} is called.
+ * <p>
+ * The value a setting had at the time of the checkpoint is recorded the first time that setting is
+ * written, so {@link #resetToCheckpoint()} only has to touch the settings that were actually
+ * changed, instead of every setting Test Butler knows about.
+ */
+class SettingsCheckpoint implements SettingsAccessor {
+
+    private static final String TAG = SettingsCheckpoint.class.getSimpleName();
+
+    private final SettingsAccessor settings;
+    private final RecordingNamespace global;
+    private final RecordingNamespace system;
+    private final RecordingNamespace secure;
+
+    private boolean active;
+
+    SettingsCheckpoint(@NonNull SettingsAccessor settings) {
+        this.settings = settings;
+        global = new RecordingNamespace(SettingsNamespaces.GLOBAL, settings.global());
+        system = new RecordingNamespace(SettingsNamespaces.SYSTEM, settings.system());
+        secure = new RecordingNamespace(SettingsNamespaces.SECURE, settings.secure());
+    }
+
+    @NonNull
+    @Override
+    public Namespace global() {
+        return global;
+    }
+
+    @NonNull
+    @Override
+    public Namespace system() {
+        return system;
+    }
+
+    @NonNull
+    @Override
+    public Namespace secure() {
+        return secure;
+    }
+
+    @Override
+    public boolean registerContentObserver(@NonNull Uri uri, boolean notifyForDescendants,
+                                           @NonNull ContentObserver observer) {
+        return settings.registerContentObserver(uri, notifyForDescendants, observer);
+    }
+
+    @Override
+    public void unregisterContentObserver(@NonNull ContentObserver observer) {
+        settings.unregisterContentObserver(observer);
+    }
+
+    /**
+     * Forget any previously recorded values and start recording settings changes from now on
+     */
+    synchronized void checkpoint() {
+        global.originals.clear();
+        system.originals.clear();
+        secure.originals.clear();
+        active = true;
+    }
+
+    /**
+     * Restore every setting changed since the last {@link #checkpoint()} to the value it had at
+     * that time. The checkpoint stays active, so this can be called again after further changes.
+     *
+     * @return true if all changed settings were restored, false if there is no active checkpoint
+     * or any setting failed to be restored
+     */
+    synchronized boolean resetToCheckpoint() {
+        if (!active) {
+            Log.w(TAG, "resetToCheckpoint called without an active checkpoint");
+            return false;
+        }
+        boolean success = secure.restore();
+        success = system.restore() && success;
+        success = global.restore() && success;
+        return success;
+    }
+
+    /**
+     * @return the number of settings changed since the last {@link #checkpoint()}
+     */
+    synchronized int getChangedSettingsCount() {
+        return global.originals.size() + system.originals.size() + secure.originals.size();
+    }
+
+    private static final class OriginalValue {
+        private final String value;
+        private final boolean isInt;
+
+        private OriginalValue(@Nullable String value, boolean isInt) {
+            this.value = value;
+            this.isInt = isInt;
+        }
+    }
+
+    private final class RecordingNamespace implements Namespace {
+        private final String name;
+        private final Namespace delegate;
+        private final Map<String, OriginalValue> originals = new LinkedHashMap<>();
+
+        private RecordingNamespace(@NonNull String name, @NonNull Namespace delegate) {
+            this.name = name;
+            this.delegate = delegate;
+        }
+
+        @Nullable
+        @Override
+        public String getString(@NonNull String key) {
+            return delegate.getString(key);
+        }
+
+        @Override
+        public boolean putString(@NonNull String key, @Nullable String value) {
+            synchronized (SettingsCheckpoint.this) {
+                if (active && !originals.containsKey(key)) {
+                    originals.put(key, new OriginalValue(delegate.getString(key), false));
+                }
+            }
+            return delegate.putString(key, value);
+        }
+
+        @Override
+        public int getInt(@NonNull String key) throws Settings.SettingNotFoundException {
+            return delegate.getInt(key);
+        }
+
+        @Override
+        public boolean putInt(@NonNull String key, int value) {
+            synchronized (SettingsCheckpoint.this) {
+                if (active && !originals.containsKey(key)) {
+                    // Read back through getInt, since some accessors remap int settings
+                    // (e.g. location mode) to a different underlying representation
+                    OriginalValue original;
+                    try {
+                        original = new OriginalValue(String.valueOf(delegate.getInt(key)), true);
+                    } catch (Settings.SettingNotFoundException e) {
+                        original = new OriginalValue(null, false);
+                    }
+                    originals.put(key, original);
+                }
+            }
+            return delegate.putInt(key, value);
+        }
+
+        @NonNull
+        @Override
+        public Uri getUri() {
+            return delegate.getUri();
+        }
+
+        @NonNull
+        @Override
+        public Uri getUriFor(@NonNull String key) {
+            return delegate.getUriFor(key);
+        }
+
+        @Nullable
+        @Override
+        public SettingsSnapshot snapshot() {
+            return delegate.snapshot();
+        }
+
+        private boolean restore() {
+            boolean success = true;
+            for (Map.Entry<String, OriginalValue> entry : originals.entrySet()) {
+                String key = entry.getKey();
+                OriginalValue original = entry.getValue();
+                if (TextUtils.equals(getCurrentValue(key, original.isInt), original.value)) {
+                    continue;
+                }
+                Log.d(TAG, String.format("Restoring setting %s.%s to %s", name, key, original.value));
+                if (original.isInt) {
+                    success = delegate.putInt(key, Integer.parseInt(original.value)) && success;
+                } else {
+                    success = delegate.putString(key, original.value) && success;
+                }
+            }
+            originals.clear();
+            return success;
+        }
+
+        @Nullable
+        private String getCurrentValue(@NonNull String key, boolean isInt) {
+            if (!isInt) {
+                return delegate.getString(key);
+            }
+            try {
+                return String.valueOf(delegate.getInt(key));
+            } catch (Settings.SettingNotFoundException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A named batch of settings values, see {@link SettingsProfiles}
+ */
+final class SettingsProfile {
+
+    // The constants in Settings.Global are hidden or only available on newer API levels
+    private static final SettingsProfile INSTALL_ACCELERATION = new SettingsProfile.Builder()
+            .put(SettingsNamespaces.GLOBAL, "package_verifier_enable", "0")
+            .put(SettingsNamespaces.GLOBAL, "verifier_verify_adb_installs", "0")
+            .put(SettingsNamespaces.GLOBAL, "package_verifier_user_consent", "-1")
+            .put(SettingsNamespaces.GLOBAL, "upload_apk_enable", "0")
+            .build();
+
+    private static final SettingsProfile QUIET_DEVICE = new SettingsProfile.Builder()
+            .put(SettingsNamespaces.SECURE, "autofill_service", "")
+            .put(SettingsNamespaces.SECURE, "content_capture_enabled", "0")
+            .put(SettingsNamespaces.SYSTEM, "haptic_feedback_enabled", "0")
+            .put(SettingsNamespaces.SYSTEM, "sound_effects_enabled", "0")
+            .put(SettingsNamespaces.SYSTEM, "dtmf_tone", "0")
+            .put(SettingsNamespaces.SYSTEM, "lockscreen_sounds_enabled", "0")
+            .put(SettingsNamespaces.GLOBAL, "heads_up_notifications_enabled", "0")
+            .build();
+
+    private final List<Entry> entries;
+
+    private SettingsProfile(@NonNull List<Entry> entries) {
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @param name The name of a profile, see {@link SettingsProfiles}
+     * @return the matching profile, or null if the name is unknown
+     */
+    @Nullable
+    static SettingsProfile forName(@Nullable String name) {
+        if (SettingsProfiles.INSTALL_ACCELERATION.equals(name)) {
+            return INSTALL_ACCELERATION;
+        } else if (SettingsProfiles.QUIET_DEVICE.equals(name)) {
+            return QUIET_DEVICE;
+        }
+        return null;
+    }
+
+    @NonNull
+    List<Entry> getEntries() {
+        return entries;
+    }
+
+    static final class Entry {
+        final String namespace;
+        final String key;
+        final String value;
+
+        Entry(@NonNull String namespace, @NonNull String key, @Nullable String value) {
+            this.namespace = namespace;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private static final class Builder {
+        private final List<Entry> entries = new ArrayList<>();
+
+        Builder put(@NonNull String namespace, @NonNull String key, @Nullable String value) {
+            entries.add(new Entry(namespace, key, value));
+            return this;
+        }
+
+        SettingsProfile build() {
+            return new SettingsProfile(entries);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Applies {@link SettingsProfile}s and restores the original values afterwards.
+ * <p>
+ * The original values are journaled to a global setting before anything is changed, so that if the
+ * service is killed without reaching onDestroy, the next start can still restore them with
+ * {@link #recover()}. Otherwise a crash would leave e.g. package verification disabled for good.
+ */
+class SettingsProfileManager {
+
+    private static final String TAG = SettingsProfileManager.class.getSimpleName();
+
+    static final String JOURNAL_SETTING = "test_butler_settings_profile_journal";
+
+    private static final String NAMESPACE = "namespace";
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+
+    private final SettingsAccessor settings;
+
+    // Original values keyed by "namespace/key", in the order they were first changed
+    private final Map<String, SettingsProfile.Entry> originals = new LinkedHashMap<>();
+
+    SettingsProfileManager(@NonNull SettingsAccessor settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Restore any originals left behind by a previous run which did not shut down cleanly
+     */
+    synchronized void recover() {
+        String journal = settings.global().getString(JOURNAL_SETTING);
+        if (TextUtils.isEmpty(journal)) {
+            return;
+        }
+        try {
+            JSONArray entries = new JSONArray(journal);
+            Log.w(TAG, "Restoring " + entries.length() + " setting(s) left over from a previous run");
+            for (int i = 0; i < entries.length(); i++) {
+                JSONObject entry = entries.getJSONObject(i);
+                String value = entry.isNull(VALUE) ? null : entry.getString(VALUE);
+                put(new SettingsProfile.Entry(entry.getString(NAMESPACE), entry.getString(KEY), value));
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Discarding unreadable settings journal", e);
+        }
+        settings.global().putString(JOURNAL_SETTING, null);
+    }
+
+    /**
+     * Apply the given profile, saving the original value of each setting the first time it changes
+     *
+     * @return true if all settings were written, false on database errors
+     */
+    synchronized boolean apply(@NonNull SettingsProfile profile) {
+        boolean journalChanged = false;
+        for (SettingsProfile.Entry entry : profile.getEntries()) {
+            String id = entry.namespace + "/" + entry.key;
+            if (!originals.containsKey(id)) {
+                SettingsAccessor.Namespace namespace = ButlerApiStubBase.getNamespace(settings, entry.namespace);
+                if (namespace == null) {
+                    continue;
+                }
+                originals.put(id, new SettingsProfile.Entry(entry.namespace, entry.key, namespace.getString(entry.key)));
+                journalChanged = true;
+            }
+        }
+        // Write the journal before changing anything, so there is nothing to lose if we are killed
+        if (journalChanged && !writeJournal()) {
+            return false;
+        }
+
+        boolean success = true;
+        for (SettingsProfile.Entry entry : profile.getEntries()) {
+            success = put(entry) && success;
+        }
+        return success;
+    }
+
+    /**
+     * Should be called after testing completes, to restore every setting changed by a profile
+     */
+    synchronized void restore() {
+        for (SettingsProfile.Entry original : originals.values()) {
+            if (!put(original)) {
+                Log.e(TAG, "Failed to restore setting " + original.namespace + "." + original.key);
+            }
+        }
+        originals.clear();
+        settings.global().putString(JOURNAL_SETTING, null);
+    }
+
+    private boolean put(@NonNull SettingsProfile.Entry entry) {
+        SettingsAccessor.Namespace namespace = ButlerApiStubBase.getNamespace(settings, entry.namespace);
+        if (namespace == null) {
+            Log.e(TAG, "Unknown settings namespace: " + entry.namespace);
+            return false;
+        }
+        if (TextUtils.equals(namespace.getString(entry.key), entry.value)) {
+            return true;
+        }
+        return namespace.putString(entry.key, entry.value);
+    }
+
+    private boolean writeJournal() {
+        JSONArray entries = new JSONArray();
+        try {
+            for (SettingsProfile.Entry original : originals.values()) {
+                JSONObject entry = new JSONObject();
+                entry.put(NAMESPACE, original.namespace);
+                entry.put(KEY, original.key);
+                entry.put(VALUE, original.value == null ? JSONObject.NULL : original.value);
+                entries.put(entry);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to build settings journal", e);
+            return false;
+        }
+        return settings.global().putString(JOURNAL_SETTING, entries.toString());
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import android.os.Bundle;
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable copy of every setting in a namespace at a point in time, stored as two parallel
+ * arrays sorted by setting name so that two snapshots can be diffed in a single pass.
+ */
+public final class SettingsSnapshot {
+
+    private final String[] keys;
+    private final String[] values;
+
+    private SettingsSnapshot(@NonNull String[] keys, @NonNull String[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    /**
+     * @return the number of settings in the snapshot
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Compute which settings differ between this snapshot and a newer one
+     *
+     * @param newer The later snapshot of the same namespace
+     * @return a Bundle mapping the name of each added, removed or changed setting to a String array
+     * holding its value in this snapshot and its value in the newer snapshot (null if it didn't exist)
+     */
+    @NonNull
+    public Bundle diff(@NonNull SettingsSnapshot newer) {
+        Bundle diff = new Bundle();
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < newer.keys.length) {
+            int compare;
+            if (i == keys.length) {
+                compare = 1;
+            } else if (j == newer.keys.length) {
+                compare = -1;
+            } else {
+                compare = keys[i].compareTo(newer.keys[j]);
+            }
+
+            if (compare < 0) {
+                diff.putStringArray(keys[i], new String[] {values[i], null});
+                i++;
+            } else if (compare > 0) {
+                diff.putStringArray(newer.keys[j], new String[] {null, newer.values[j]});
+                j++;
+            } else {
+                if (!TextUtils.equals(values[i], newer.values[j])) {
+                    diff.putStringArray(keys[i], new String[] {values[i], newer.values[j]});
+                }
+                i++;
+                j++;
+            }
+        }
+        return diff;
+    }
+
+    /**
+     * Collects settings in any order and builds a sorted {@link SettingsSnapshot}
+     */
+    public static final class Builder {
+        private final Map<String, String> settings = new TreeMap<>();
+
+        @NonNull
+        public Builder put(@NonNull String key, @Nullable String value) {
+            settings.put(key, value);
+            return this;
+        }
+
+        @NonNull
+        public SettingsSnapshot build() {
+            String[] keys = new String[settings.size()];
+            String[] values = new String[settings.size()];
+            int i = 0;
+            for (Map.Entry<String, String> setting : settings.entrySet()) {
+                keys[i] = setting.getKey();
+                values[i] = setting.getValue();
+                i++;
+            }
+            return new SettingsSnapshot(keys, values);
+        }
+    }
+}
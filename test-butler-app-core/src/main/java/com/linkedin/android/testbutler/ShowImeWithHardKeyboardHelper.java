@@ -61,6 +61,18 @@ public class ShowImeWithHardKeyboardHelper {
         setShowImeWithHardKeyboardState(originalShowImeMode);
     }
 
+    /**
+     * @return true if the software IME is currently shown even with a hardware keyboard
+     */
+    boolean getShowImeWithHardKeyboardState() {
+        try {
+            return settings.secure().getInt(SHOW_IME_SETTING) == 1;
+        } catch (Settings.SettingNotFoundException e) {
+            Log.e(TAG, "Error reading soft keyboard (" + SHOW_IME_SETTING + ") setting!", e);
+            return false;
+        }
+    }
+
     /**
      * Tell the system to prefer the hardware IME
      *
@@ -55,6 +55,18 @@ public class SpellCheckerDisabler {
         setSpellChecker(originalSpellCheckerMode);
     }
 
+    /**
+     * @return true if the system spell checker is currently enabled
+     */
+    boolean isSpellCheckerEnabled() {
+        try {
+            return settings.secure().getInt(SPELL_CHECKER_SETTING) == 1;
+        } catch (Settings.SettingNotFoundException e) {
+            Log.e(TAG, "Error reading spell checker (" + SPELL_CHECKER_SETTING + ") setting!", e);
+            return false;
+        }
+    }
+
     /**
      * Enable or disable the system spell checker
      * @param enabled The desired state of the Spell Checker service
@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import android.os.Build;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records how long each startup and shutdown phase of the Test Butler services takes, both as
+ * android.os.Trace sections (visible in Perfetto/systrace) and as durations which are reported
+ * through ButlerApi#getStartupTimings.
+ * <p>
+ * {@link #begin(String)} and {@link #end(String)} must be called on the same thread for a phase,
+ * but different phases may run on different threads.
+ */
+public class StartupTimings {
+
+    private static final String TAG = StartupTimings.class.getSimpleName();
+
+    private static final String SECTION_PREFIX = "TestButler:";
+
+    private final Map<String, Long> startTimes = new HashMap<>();
+    private final Map<String, Long> durations = new LinkedHashMap<>();
+
+    /**
+     * Start timing the given phase
+     */
+    public void begin(@NonNull String phase) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(SECTION_PREFIX + phase);
+        }
+        synchronized (this) {
+            startTimes.put(phase, SystemClock.elapsedRealtime());
+        }
+    }
+
+    /**
+     * Stop timing the given phase, which must be the innermost phase begun on this thread
+     */
+    public void end(@NonNull String phase) {
+        synchronized (this) {
+            Long start = startTimes.remove(phase);
+            if (start == null) {
+                Log.w(TAG, "Phase " + phase + " was never begun");
+            } else {
+                durations.put(phase, SystemClock.elapsedRealtime() - start);
+            }
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * @return the duration of every finished phase in milliseconds, keyed by phase name
+     */
+    @NonNull
+    public synchronized Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        for (Map.Entry<String, Long> duration : durations.entrySet()) {
+            bundle.putLong(duration.getKey(), duration.getValue());
+        }
+        return bundle;
+    }
+
+    /**
+     * Log the duration of every finished phase, e.g. once shutdown has completed
+     */
+    public synchronized void log() {
+        for (Map.Entry<String, Long> duration : durations.entrySet()) {
+            Log.d(TAG, String.format("%s took %d ms", duration.getKey(), duration.getValue()));
+        }
+    }
+}
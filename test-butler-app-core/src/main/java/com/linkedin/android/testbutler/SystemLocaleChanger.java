@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import android.content.res.Configuration;
+import android.os.Build;
+import android.os.LocaleList;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Locale;
+
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.getField;
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.getMethod;
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.invoke;
+
+/**
+ * Helper class for changing the device-wide locale through
+ * IActivityManager#updatePersistentConfiguration, which requires the CHANGE_CONFIGURATION
+ * permission held by both the emulator app and the shell user.
+ * <p>
+ * This is much faster than changing the locale through the Settings app, and applies to every app on
+ * the device, unlike changing the Resources configuration of the app under test.
+ */
+class SystemLocaleChanger {
+
+    private static final String TAG = SystemLocaleChanger.class.getSimpleName();
+
+    private final ServiceManagerWrapper serviceManager;
+    private Locale originalLocale;
+
+    SystemLocaleChanger(@NonNull ServiceManagerWrapper serviceManager) {
+        this.serviceManager = serviceManager;
+    }
+
+    /**
+     * Change the device locale
+     *
+     * @return true if the new locale was applied
+     */
+    synchronized boolean setSystemLocale(@NonNull Locale locale) {
+        try {
+            Object activityManager = serviceManager.getActivityManager();
+            Configuration configuration = (Configuration) invoke(
+                    getMethod(activityManager.getClass(), "getConfiguration"), activityManager);
+            if (originalLocale == null) {
+                originalLocale = getLocale(configuration);
+            }
+            if (locale.equals(getLocale(configuration))) {
+                return true;
+            }
+            setLocale(configuration, locale);
+            invoke(getMethod(activityManager.getClass(), "updatePersistentConfiguration", Configuration.class),
+                    activityManager, configuration);
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to change the system locale", e);
+            return false;
+        }
+    }
+
+    /**
+     * Should be called after testing completes, to restore the original locale if it was changed
+     */
+    synchronized void restoreSystemLocale() {
+        if (originalLocale != null) {
+            setSystemLocale(originalLocale);
+            originalLocale = null;
+        }
+    }
+
+    @Nullable
+    @SuppressWarnings("deprecation")
+    private static Locale getLocale(@NonNull Configuration configuration) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            return configuration.getLocales().isEmpty() ? null : configuration.getLocales().get(0);
+        }
+        return configuration.locale;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void setLocale(@NonNull Configuration configuration, @NonNull Locale locale) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            configuration.setLocales(new LocaleList(locale));
+        } else {
+            configuration.locale = locale;
+        }
+        // Mark the locale as chosen by the user, like the Settings app does, so the system persists it
+        try {
+            getField(Configuration.class, "userSetLocale").setBoolean(configuration, true);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to set Configuration.userSetLocale", e);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler.utils;
+
+import android.os.RemoteException;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Common reflection calls. All exceptions are wrapped as RemoteExceptions with descriptive
+ * messages.
+ * <p>
+ * Classes, methods and fields are resolved once and cached, including failed lookups, so that
+ * repeated operations on hidden APIs don't pay for resolution (or for building error messages)
+ * every time.
+ */
+public class ReflectionUtils {
+
+    private static final String TAG = ReflectionUtils.class.getSimpleName();
+
+    private static final Map<String, Object> classes = new ConcurrentHashMap<>();
+    private static final Map<MemberKey, Object> methods = new ConcurrentHashMap<>();
+    private static final Map<MemberKey, Object> fields = new ConcurrentHashMap<>();
+
+    private ReflectionUtils() {
+    }
+
+    @NonNull
+    public static Class<?> classForName(@NonNull String className) throws RemoteException {
+        Object cached = classes.get(className);
+        if (cached == null) {
+            try {
+                cached = Class.forName(className);
+            } catch (ClassNotFoundException e) {
+                cached = new Failure("ClassNotFoundException for " + className, e);
+            }
+            classes.put(className, cached);
+        }
+        if (cached instanceof Failure) {
+            throw ((Failure) cached).toRemoteException();
+        }
+        return (Class<?>) cached;
+    }
+
+    @NonNull
+    public static Method getMethod(@NonNull Class<?> clazz, @NonNull String methodName, @NonNull Class<?>... args) throws RemoteException {
+        MemberKey key = new MemberKey(clazz, methodName, args);
+        Object cached = methods.get(key);
+        if (cached == null) {
+            try {
+                cached = clazz.getMethod(methodName, args);
+            } catch (NoSuchMethodException e) {
+                cached = new Failure("NoSuchMethodException for " + methodDescriptor(clazz, methodName, args), e);
+            }
+            methods.put(key, cached);
+        }
+        if (cached instanceof Failure) {
+            throw ((Failure) cached).toRemoteException();
+        }
+        return (Method) cached;
+    }
+
+    @NonNull
+    public static Field getField(@NonNull Class<?> clazz, @NonNull String fieldName) throws RemoteException {
+        MemberKey key = new MemberKey(clazz, fieldName);
+        Object cached = fields.get(key);
+        if (cached == null) {
+            try {
+                cached = clazz.getField(fieldName);
+            } catch (NoSuchFieldException e) {
+                cached = new Failure("NoSuchFieldException for " + clazz.getName() + "." + fieldName, e);
+            }
+            fields.put(key, cached);
+        }
+        if (cached instanceof Failure) {
+            throw ((Failure) cached).toRemoteException();
+        }
+        return (Field) cached;
+    }
+
+    /**
+     * Get the value of a static int field, e.g. a hidden constant
+     */
+    public static int getStaticInt(@NonNull Class<?> clazz, @NonNull String fieldName) throws RemoteException {
+        Field field = getField(clazz, fieldName);
+        try {
+            return field.getInt(null);
+        } catch (IllegalAccessException e) {
+            throw ExceptionCreator.createRemoteException(TAG, "IllegalAccessException for " + clazz.getName() + "." + fieldName, e);
+        }
+    }
+
+    @Nullable
+    public static Object invoke(@NonNull Method method, @Nullable Object instance, @NonNull Object... args) throws RemoteException {
+        try {
+            return method.invoke(instance, args);
+        } catch (IllegalAccessException e) {
+            throw ExceptionCreator.createRemoteException(TAG, "IllegalAccessException for " + methodDescriptor(method), e);
+        } catch (IllegalArgumentException e) {
+            StringBuilder sb = new StringBuilder();
+            for (Object arg : args) {
+                if (sb.length() > 0) {
+                    sb.append(", ");
+                }
+                sb.append(arg.getClass().getSimpleName());
+            }
+            throw ExceptionCreator.createRemoteException(TAG,
+                    String.format("IllegalArgumentException for %s, given %s, %s",
+                            methodDescriptor(method), instance.getClass().getSimpleName(), sb.toString()), e);
+        } catch (InvocationTargetException e) {
+            throw ExceptionCreator.createRemoteException(TAG, "InvocationTargetException for " + methodDescriptor(method), e);
+        }
+    }
+
+    private static String methodDescriptor(Method method) {
+        return methodDescriptor(method.getDeclaringClass(), method.getName(), method.getParameterTypes());
+    }
+
+    private static String methodDescriptor(Class<?> clazz, String methodName, Class<?>... args) {
+        StringBuilder sb = new StringBuilder();
+        for (Class<?> arg : args) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(arg.getSimpleName());
+        }
+        return String.format("%s.%s(%s)", clazz.getName(), methodName, sb.toString());
+    }
+
+    /**
+     * A cached lookup failure. The message is only built once, when the lookup first fails.
+     */
+    private static final class Failure {
+        private final String message;
+        private final Exception cause;
+
+        private Failure(@NonNull String message, @NonNull Exception cause) {
+            this.message = message;
+            this.cause = cause;
+        }
+
+        @NonNull
+        private RemoteException toRemoteException() {
+            return ExceptionCreator.createRemoteException(TAG, message, cause);
+        }
+    }
+
+    private static final class MemberKey {
+        private static final Class<?>[] NO_PARAMETERS = new Class<?>[0];
+
+        private final Class<?> clazz;
+        private final String name;
+        private final Class<?>[] parameterTypes;
+        private final int hashCode;
+
+        private MemberKey(@NonNull Class<?> clazz, @NonNull String name) {
+            this(clazz, name, NO_PARAMETERS);
+        }
+
+        private MemberKey(@NonNull Class<?> clazz, @NonNull String name, @NonNull Class<?>[] parameterTypes) {
+            this.clazz = clazz;
+            this.name = name;
+            this.parameterTypes = parameterTypes;
+            this.hashCode = 31 * (31 * clazz.hashCode() + name.hashCode()) + Arrays.hashCode(parameterTypes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MemberKey)) {
+                return false;
+            }
+            MemberKey other = (MemberKey) o;
+            return clazz == other.clazz && name.equals(other.name)
+                    && Arrays.equals(parameterTypes, other.parameterTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
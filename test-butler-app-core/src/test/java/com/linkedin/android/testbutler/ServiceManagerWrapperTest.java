@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import android.os.IBinder;
+import android.os.IInterface;
+import android.os.Parcel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileDescriptor;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+public class ServiceManagerWrapperTest {
+
+    private static final String SERVICE_NAME = "fake";
+    private static final String SERVICE_CLASS_NAME = FakeService.class.getName();
+
+    private static final Map<String, IBinder> registeredServices = new HashMap<>();
+
+    private ButlerStats stats;
+    private ServiceManagerWrapper serviceManager;
+
+    @Before
+    public void setUp() throws Exception {
+        registeredServices.clear();
+        stats = new ButlerStats();
+        serviceManager = new ServiceManagerWrapper(
+                ServiceManagerWrapperTest.class.getDeclaredMethod("getService", String.class), stats);
+    }
+
+    @Test
+    public void secondLookupIsServedFromCache() throws Exception {
+        FakeBinder binder = new FakeBinder();
+        registeredServices.put(SERVICE_NAME, binder);
+
+        Object first = serviceManager.getIService(SERVICE_NAME, SERVICE_CLASS_NAME);
+        Object second = serviceManager.getIService(SERVICE_NAME, SERVICE_CLASS_NAME);
+
+        assertSame(first, second);
+        assertSame(binder, ((FakeService.Proxy) first).binder);
+        assertEquals(1, stats.get(ButlerStats.SERVICE_CACHE_MISSES));
+        assertEquals(1, stats.get(ButlerStats.SERVICE_CACHE_HITS));
+        assertEquals(0, stats.get(ButlerStats.SERVICE_CACHE_EVICTIONS));
+    }
+
+    @Test
+    public void deadBinderIsEvictedFromCache() throws Exception {
+        FakeBinder deadBinder = new FakeBinder();
+        registeredServices.put(SERVICE_NAME, deadBinder);
+        serviceManager.getIService(SERVICE_NAME, SERVICE_CLASS_NAME);
+        assertNotNull(deadBinder.recipient);
+
+        // The system process restarted and registered a new binder for the service
+        FakeBinder newBinder = new FakeBinder();
+        registeredServices.put(SERVICE_NAME, newBinder);
+        deadBinder.recipient.binderDied();
+
+        Object proxy = serviceManager.getIService(SERVICE_NAME, SERVICE_CLASS_NAME);
+        assertSame(newBinder, ((FakeService.Proxy) proxy).binder);
+        assertEquals(2, stats.get(ButlerStats.SERVICE_CACHE_MISSES));
+        assertEquals(0, stats.get(ButlerStats.SERVICE_CACHE_HITS));
+        assertEquals(1, stats.get(ButlerStats.SERVICE_CACHE_EVICTIONS));
+    }
+
+    @Test
+    public void staleDeathNotificationDoesNotEvictNewBinder() throws Exception {
+        FakeBinder deadBinder = new FakeBinder();
+        registeredServices.put(SERVICE_NAME, deadBinder);
+        serviceManager.getIService(SERVICE_NAME, SERVICE_CLASS_NAME);
+        IBinder.DeathRecipient staleRecipient = deadBinder.recipient;
+        staleRecipient.binderDied();
+
+        FakeBinder newBinder = new FakeBinder();
+        registeredServices.put(SERVICE_NAME, newBinder);
+        serviceManager.getIService(SERVICE_NAME, SERVICE_CLASS_NAME);
+
+        // A repeated notification for the old binder must leave the new entry alone
+        staleRecipient.binderDied();
+        Object proxy = serviceManager.getIService(SERVICE_NAME, SERVICE_CLASS_NAME);
+        assertSame(newBinder, ((FakeService.Proxy) proxy).binder);
+        assertEquals(1, stats.get(ButlerStats.SERVICE_CACHE_HITS));
+        assertEquals(1, stats.get(ButlerStats.SERVICE_CACHE_EVICTIONS));
+    }
+
+    /**
+     * Stands in for ServiceManager#getService
+     */
+    @SuppressWarnings("unused")
+    public static IBinder getService(String name) {
+        return registeredServices.get(name);
+    }
+
+    /**
+     * Stands in for a generated AIDL interface, looked up by name like the real ones
+     */
+    public interface FakeService extends IInterface {
+
+        final class Stub {
+            @SuppressWarnings("unused")
+            public static FakeService asInterface(IBinder binder) {
+                return new Proxy(binder);
+            }
+        }
+
+        final class Proxy implements FakeService {
+            final IBinder binder;
+
+            Proxy(IBinder binder) {
+                this.binder = binder;
+            }
+
+            @Override
+            public IBinder asBinder() {
+                return binder;
+            }
+        }
+    }
+
+    private static class FakeBinder implements IBinder {
+        private DeathRecipient recipient;
+
+        @Override
+        public void linkToDeath(DeathRecipient recipient, int flags) {
+            this.recipient = recipient;
+        }
+
+        @Override
+        public boolean unlinkToDeath(DeathRecipient recipient, int flags) {
+            boolean linked = this.recipient == recipient;
+            if (linked) {
+                this.recipient = null;
+            }
+            return linked;
+        }
+
+        @Override
+        public String getInterfaceDescriptor() {
+            return SERVICE_CLASS_NAME;
+        }
+
+        @Override
+        public boolean pingBinder() {
+            return recipient != null;
+        }
+
+        @Override
+        public boolean isBinderAlive() {
+            return recipient != null;
+        }
+
+        @Override
+        public IInterface queryLocalInterface(String descriptor) {
+            return null;
+        }
+
+        @Override
+        public void dump(FileDescriptor fd, String[] args) {
+        }
+
+        @Override
+        public void dumpAsync(FileDescriptor fd, String[] args) {
+        }
+
+        @Override
+        public boolean transact(int code, Parcel data, Parcel reply, int flags) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Binder;
+import android.os.Bundle;
+import android.os.IBinder;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.app.BundleCompat;
+
+import com.linkedin.android.testbutler.shell.ShellButlerService;
+
+/**
+ * Receives the ButlerApi binder from ShellButlerService through {@link #call(String, String, Bundle)}.
+ * <p>
+ * Provider calls are dispatched straight to a binder thread of this process, so unlike the
+ * broadcast ShellButlerService falls back to, the handoff can't get stuck behind other broadcasts
+ * on a loaded device.
+ */
+public class ButlerApiHandoffProvider extends ContentProvider {
+
+    private static final String TAG = ButlerApiHandoffProvider.class.getSimpleName();
+
+    // Process.ROOT_UID and Process.SHELL_UID are hidden
+    private static final int ROOT_UID = 0;
+    private static final int SHELL_UID = 2000;
+
+    /**
+     * Notified when ShellButlerService hands off its ButlerApi
+     */
+    interface Listener {
+        void onButlerApiReceived(@NonNull IBinder binder);
+    }
+
+    private static volatile Listener listener;
+
+    static void setListener(@Nullable Listener listener) {
+        ButlerApiHandoffProvider.listener = listener;
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public Bundle call(@NonNull String method, @Nullable String arg, @Nullable Bundle extras) {
+        if (!ShellButlerService.HANDOFF_METHOD.equals(method) || extras == null) {
+            return null;
+        }
+        // This provider has to be exported for the shell user to reach it, so only trust the shell
+        int callingUid = Binder.getCallingUid();
+        if (callingUid != SHELL_UID && callingUid != ROOT_UID) {
+            Log.w(TAG, "Ignoring ButlerApi handoff from uid " + callingUid);
+            return null;
+        }
+        IBinder binder = BundleCompat.getBinder(extras, ShellButlerService.BUTLER_API_BUNDLE_KEY);
+        Listener current = listener;
+        if (binder == null || current == null) {
+            return null;
+        }
+        current.onButlerApiReceived(binder);
+
+        Bundle result = new Bundle();
+        result.putBoolean(ShellButlerService.HANDOFF_ACCEPTED_KEY, true);
+        return result;
+    }
+
+    @Nullable
+    @Override
+    public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
+                        @Nullable String[] selectionArgs, @Nullable String sortOrder) {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public String getType(@NonNull Uri uri) {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public Uri insert(@NonNull Uri uri, @Nullable ContentValues values) {
+        return null;
+    }
+
+    @Override
+    public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
+        return 0;
+    }
+
+    @Override
+    public int update(@NonNull Uri uri, @Nullable ContentValues values, @Nullable String selection,
+                      @Nullable String[] selectionArgs) {
+        return 0;
+    }
+}
@@ -20,12 +20,14 @@ import android.app.Service;
 import android.content.Intent;
 import android.net.wifi.WifiManager;
 import android.os.Build;
+import android.os.Bundle;
 import android.os.IBinder;
 import android.os.RemoteException;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
 
+import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 
 
@@ -53,7 +55,8 @@ public class ButlerService extends Service {
      * 1) Find this device via ADB
      * 2) Start a BroadcastReceiver
      * 3) Start ShellButlerService via adb shell app_process
-     * 4) Wait for ShellButlerService broadcast containing ButlerApi Binder
+     * 4) Acquire locks and set up the waiters while ShellButlerService starts, then wait for the
+     *    ButlerApi Binder it hands off
      * 5) Wrap that ButlerApi in onBind()
      * 6) Send kill command to ShellButlerService in onDestroy()
      */
@@ -65,6 +68,13 @@ public class ButlerService extends Service {
     private CommonDeviceLocks locks;
     private KeyguardManager.KeyguardLock keyguardLock;
     private AccessibilityServiceWaiter accessibilityServiceWaiter;
+    private ConnectivityWaiter connectivityWaiter;
+    private RotationWaiter rotationWaiter;
+    private LocaleWaiter localeWaiter;
+    private final PendingOperations pendingOperations = new PendingOperations();
+    // Wifi state at the last checkpoint, only recorded here before 8.1 (see changeWifiState)
+    private Boolean checkpointWifiEnabled;
+    private final StartupTimings timings = new StartupTimings();
 
     @Override
     public void onCreate() {
@@ -73,11 +83,17 @@ public class ButlerService extends Service {
         Log.d(TAG, "ButlerService starting up...");
 
         try {
-            shellBinder = new ShellButlerServiceBinder(this);
-            butlerApi = shellBinder.bind(5, TimeUnit.SECONDS);
+            // Launching app_process and booting the shell process takes much longer than our own
+            // setup below, so only wait for the ButlerApi after that
+            timings.begin("shellBind");
+            shellBinder = new ShellButlerServiceBinder(this, timings);
+            shellBinder.start();
+            timings.end("shellBind");
 
+            timings.begin("locksAcquire");
             locks = new CommonDeviceLocks();
             locks.acquire(this);
+            timings.end("locksAcquire");
 
             // CommonDeviceLocks doesn't enable the Keyguard Lock on Q due to compatibility issues.
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
@@ -86,6 +102,11 @@ public class ButlerService extends Service {
                 keyguardLock.disableKeyguard();
             }
             accessibilityServiceWaiter = new AccessibilityServiceWaiter();
+            connectivityWaiter = new ConnectivityWaiter(this);
+            rotationWaiter = new RotationWaiter(this);
+            localeWaiter = new LocaleWaiter(this);
+
+            butlerApi = shellBinder.awaitButlerApi(5, TimeUnit.SECONDS);
 
             Log.d(TAG, "ButlerService startup completed...");
         } catch (InterruptedException e) {
@@ -101,6 +122,7 @@ public class ButlerService extends Service {
 
         shellBinder.unbind();
         locks.release();
+        pendingOperations.kill();
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
             keyguardLock.reenableKeyguard();
@@ -113,16 +135,19 @@ public class ButlerService extends Service {
         return new ButlerApi.Stub() {
             @Override
             public boolean setWifiState(boolean enabled) throws RemoteException {
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
-                    return butlerApi.setWifiState(enabled);
-                } else {
-                    // Before 8.1, shell user doesn't have CHANGE_WIFI_STATE privileges, so we have to do it
-                    // here instead of in ShellButlerService.
-                    // Note that after Android 10, you cannot call setWifiEnabled from an app, so it *must* be
-                    // done in ShellButlerService (covered by check above).
-                    WifiManager wifiManager = (WifiManager) getApplicationContext().getSystemService(WIFI_SERVICE);
-                    return wifiManager.setWifiEnabled(enabled);
+                // Keep the IdlingResource busy until the connectivity change has settled
+                ConnectivityWaiter.Wait wait = connectivityWaiter.waitForWifi(enabled);
+                try {
+                    if (!changeWifiState(enabled)) {
+                        wait.cancel();
+                        return false;
+                    }
+                } catch (RemoteException e) {
+                    wait.cancel();
+                    throw e;
                 }
+                pendingOperations.track(wait);
+                return true;
             }
 
             @Override
@@ -132,12 +157,34 @@ public class ButlerService extends Service {
 
             @Override
             public boolean setRotation(int rotation) throws RemoteException {
-                return butlerApi.setRotation(rotation);
+                RotationWaiter.Wait wait = rotationWaiter.waitForRotation(rotation);
+                try {
+                    if (!butlerApi.setRotation(rotation)) {
+                        wait.cancel();
+                        return false;
+                    }
+                } catch (RemoteException e) {
+                    wait.cancel();
+                    throw e;
+                }
+                pendingOperations.track(wait);
+                return true;
             }
 
             @Override
             public boolean setGsmState(boolean enabled) throws RemoteException {
-                return butlerApi.setGsmState(enabled);
+                ConnectivityWaiter.Wait wait = connectivityWaiter.waitForMobileData(enabled);
+                try {
+                    if (!butlerApi.setGsmState(enabled)) {
+                        wait.cancel();
+                        return false;
+                    }
+                } catch (RemoteException e) {
+                    wait.cancel();
+                    throw e;
+                }
+                pendingOperations.track(wait);
+                return true;
             }
 
             @Override
@@ -173,6 +220,250 @@ public class ButlerService extends Service {
                 }
                 return successful;
             }
+
+            @Override
+            public boolean checkpoint() throws RemoteException {
+                boolean success = butlerApi.checkpoint();
+                saveCheckpointWifiState();
+                return success;
+            }
+
+            @Override
+            public boolean resetToCheckpoint() throws RemoteException {
+                boolean success = butlerApi.resetToCheckpoint();
+                // Before 8.1, ShellButlerService leaves wifi alone, so restore it from this process
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O_MR1 && checkpointWifiEnabled != null
+                        && isWifiEnabled() != checkpointWifiEnabled) {
+                    success = changeWifiState(checkpointWifiEnabled) && success;
+                }
+                return success;
+            }
+
+            @Override
+            public boolean applyDeviceConfig(Bundle config, boolean checkpoint) throws RemoteException {
+                if (checkpoint) {
+                    saveCheckpointWifiState();
+                }
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1 || !config.containsKey(DeviceConfigKeys.WIFI)) {
+                    return butlerApi.applyDeviceConfig(config, checkpoint);
+                }
+                // Before 8.1, wifi has to be changed from this process (see setWifiState)
+                Bundle shellConfig = new Bundle(config);
+                shellConfig.remove(DeviceConfigKeys.WIFI);
+                boolean success = butlerApi.applyDeviceConfig(shellConfig, checkpoint);
+                boolean enabled = config.getBoolean(DeviceConfigKeys.WIFI);
+                if (isWifiEnabled() == enabled) {
+                    return success;
+                }
+                return changeWifiState(enabled) && success;
+            }
+
+            @Override
+            public float[] ensureAnimationsDisabled() throws RemoteException {
+                return butlerApi.ensureAnimationsDisabled();
+            }
+
+            @Override
+            public boolean setAnimationWatchdogState(boolean enabled) throws RemoteException {
+                return butlerApi.setAnimationWatchdogState(enabled);
+            }
+
+            @Override
+            public Bundle getStats() throws RemoteException {
+                return butlerApi.getStats();
+            }
+
+            @Override
+            public boolean pinSettings(String namespace, Bundle values) throws RemoteException {
+                return butlerApi.pinSettings(namespace, values);
+            }
+
+            @Override
+            public boolean unpinSettings(String namespace, String[] keys) throws RemoteException {
+                return butlerApi.unpinSettings(namespace, keys);
+            }
+
+            @Override
+            public boolean putSettings(String namespace, Bundle values) throws RemoteException {
+                return butlerApi.putSettings(namespace, values);
+            }
+
+            @Override
+            public Bundle getSettings(String namespace, String[] keys) throws RemoteException {
+                return butlerApi.getSettings(namespace, keys);
+            }
+
+            @Override
+            public Bundle getSettingsChangesSinceStart(String namespace) throws RemoteException {
+                return butlerApi.getSettingsChangesSinceStart(namespace);
+            }
+
+            @Override
+            public boolean awaitSetting(String namespace, String key, String expectedValue, long timeoutMs)
+                    throws RemoteException {
+                return butlerApi.awaitSetting(namespace, key, expectedValue, timeoutMs);
+            }
+
+            @Override
+            public boolean setWifiStateAndWait(boolean enabled, long timeoutMs) throws RemoteException {
+                // The *AndWait calls wait here rather than in ShellButlerService (see ListeningWait)
+                ConnectivityWaiter.Wait wait = connectivityWaiter.waitForWifi(enabled);
+                try {
+                    if (!changeWifiState(enabled)) {
+                        wait.cancel();
+                        return false;
+                    }
+                } catch (RemoteException e) {
+                    wait.cancel();
+                    throw e;
+                }
+                return wait.await(timeoutMs);
+            }
+
+            @Override
+            public boolean setGsmStateAndWait(boolean enabled, long timeoutMs) throws RemoteException {
+                ConnectivityWaiter.Wait wait = connectivityWaiter.waitForMobileData(enabled);
+                try {
+                    if (!butlerApi.setGsmState(enabled)) {
+                        wait.cancel();
+                        return false;
+                    }
+                } catch (RemoteException e) {
+                    wait.cancel();
+                    throw e;
+                }
+                return wait.await(timeoutMs);
+            }
+
+            @Override
+            public boolean setRotationAndWait(int rotation, long timeoutMs) throws RemoteException {
+                RotationWaiter.Wait wait = rotationWaiter.waitForRotation(rotation);
+                try {
+                    if (!butlerApi.setRotation(rotation)) {
+                        wait.cancel();
+                        return false;
+                    }
+                } catch (RemoteException e) {
+                    wait.cancel();
+                    throw e;
+                }
+                return wait.await(timeoutMs);
+            }
+
+            @Override
+            public boolean setSystemLocale(String language, String country, long timeoutMs) throws RemoteException {
+                // ShellButlerService applies the locale, but the change has to be observed from this process
+                LocaleWaiter.Wait wait = localeWaiter.waitForLocale(new Locale(language, country));
+                try {
+                    if (!butlerApi.setSystemLocale(language, country, timeoutMs)) {
+                        wait.cancel();
+                        return false;
+                    }
+                } catch (RemoteException e) {
+                    wait.cancel();
+                    throw e;
+                }
+                return wait.await(timeoutMs);
+            }
+
+            @Override
+            public boolean setDozeEnabled(boolean enabled) throws RemoteException {
+                return butlerApi.setDozeEnabled(enabled);
+            }
+
+            @Override
+            public boolean setForceIdle(boolean idle) throws RemoteException {
+                return butlerApi.setForceIdle(idle);
+            }
+
+            @Override
+            public boolean setAppStandbyBucket(String packageName, int bucket) throws RemoteException {
+                return butlerApi.setAppStandbyBucket(packageName, bucket);
+            }
+
+            @Override
+            public boolean clearApplicationData(String packageName) throws RemoteException {
+                return butlerApi.clearApplicationData(packageName);
+            }
+
+            @Override
+            public boolean forceStopPackage(String packageName) throws RemoteException {
+                return butlerApi.forceStopPackage(packageName);
+            }
+
+            @Override
+            public long compilePackage(String packageName, String compilerFilter) throws RemoteException {
+                return butlerApi.compilePackage(packageName, compilerFilter);
+            }
+
+            @Override
+            public boolean setAppOpModes(String packageName, Bundle modes) throws RemoteException {
+                return butlerApi.setAppOpModes(packageName, modes);
+            }
+
+            @Override
+            public boolean applySettingsProfile(String profile) throws RemoteException {
+                return butlerApi.applySettingsProfile(profile);
+            }
+
+            @Override
+            public IBinder getPrivilegedApi() throws RemoteException {
+                // Clients call ShellButlerService directly for everything which isn't handled here
+                return butlerApi.asBinder();
+            }
+
+            @Override
+            public Bundle getStartupTimings() throws RemoteException {
+                // Combine the phases of ShellButlerService with the ones of this process
+                Bundle startupTimings = butlerApi.getStartupTimings();
+                if (startupTimings == null) {
+                    startupTimings = new Bundle();
+                }
+                startupTimings.putAll(timings.toBundle());
+                return startupTimings;
+            }
+
+            @Override
+            public boolean isIdle() throws RemoteException {
+                // Changes are observed from this process, so they are tracked here rather than in ShellButlerService
+                return pendingOperations.isIdle();
+            }
+
+            @Override
+            public void registerIdleCallback(ButlerIdleCallback callback) throws RemoteException {
+                pendingOperations.registerIdleCallback(callback);
+            }
+
+            @Override
+            public void unregisterIdleCallback(ButlerIdleCallback callback) throws RemoteException {
+                pendingOperations.unregisterIdleCallback(callback);
+            }
         };
     }
+
+    private void saveCheckpointWifiState() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O_MR1) {
+            checkpointWifiEnabled = isWifiEnabled();
+        }
+    }
+
+    private boolean isWifiEnabled() {
+        WifiManager wifiManager = (WifiManager) getApplicationContext().getSystemService(WIFI_SERVICE);
+        int state = wifiManager.getWifiState();
+        // A change which is still in progress counts as done, so it isn't requested again
+        return state == WifiManager.WIFI_STATE_ENABLED || state == WifiManager.WIFI_STATE_ENABLING;
+    }
+
+    private boolean changeWifiState(boolean enabled) throws RemoteException {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+            return butlerApi.setWifiState(enabled);
+        } else {
+            // Before 8.1, shell user doesn't have CHANGE_WIFI_STATE privileges, so we have to do it
+            // here instead of in ShellButlerService.
+            // Note that after Android 10, you cannot call setWifiEnabled from an app, so it *must* be
+            // done in ShellButlerService (covered by check above).
+            WifiManager wifiManager = (WifiManager) getApplicationContext().getSystemService(WIFI_SERVICE);
+            return wifiManager.setWifiEnabled(enabled);
+        }
+    }
 }
@@ -60,9 +60,10 @@ import java.util.concurrent.TimeUnit;
  *
  * 4) Most intents come through on the main thread. Because TestButler starts ButlerService
  * first, its 'onBind' call would come through before any ShellButlerService intent containing
- * the ButlerApi to return. However, BroadcastReceivers can be run on a separate handler. Thus
- * ShellButlerService uses sendBroadcast to send the ButlerApi, and ButlerService's onCreate
- * blocks until that ButlerApi is received in a separate handler thread.
+ * the ButlerApi to return. However, ContentProvider#call runs on a binder thread, so
+ * ShellButlerService hands the ButlerApi to ButlerApiHandoffProvider while ButlerService's onCreate
+ * blocks waiting for it. If that fails, ShellButlerService falls back to sendBroadcast, which is
+ * received on a separate handler thread, but can be delayed for seconds on a busy device.
  *
  * 5) ShellButlerService is notified of shutdown via the binder. However, we didn't want to
  * change the AIDL that the user sees, so we call 'transact' explicitly with an unused
@@ -76,6 +77,7 @@ class ShellButlerServiceBinder {
     private static final int ADB_REVERSE_PORT = 5038;
 
     private final Context context;
+    private final StartupTimings timings;
 
     private HandlerThread thread;
     private ButlerApiBroadcastReceiver receiver;
@@ -83,13 +85,19 @@ class ShellButlerServiceBinder {
 
     private volatile ButlerApi butlerApi;
 
-    ShellButlerServiceBinder(@NonNull Context context) {
+    ShellButlerServiceBinder(@NonNull Context context, @NonNull StartupTimings timings) {
         this.context = context;
+        this.timings = timings;
     }
 
-    @Nullable
-    ButlerApi bind(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+    /**
+     * Launch ShellButlerService without waiting for it, so the caller can do its own setup while the
+     * shell process starts. Must be followed by {@link #awaitButlerApi(long, TimeUnit)}.
+     */
+    void start() {
+        timings.begin("adbDiscovery");
         AdbDevice adbDevice = AdbDevice.getCurrentDevice(ADB_HOST, ADB_REVERSE_PORT);
+        timings.end("adbDiscovery");
 
         // note: must use separate thread to receive, as we block ButlerService's main thread in
         // onCreate waiting for the butler api broadcast.
@@ -100,15 +108,32 @@ class ShellButlerServiceBinder {
         IntentFilter filter = new IntentFilter(ShellButlerService.BROADCAST_BUTLER_API_ACTION);
         context.registerReceiver(receiver, filter, null, new Handler(thread.getLooper()));
 
+        ButlerApiHandoffProvider.setListener(receiver);
+
         Log.d(TAG, "Registered ShellButlerService receiver, launching ShellButlerService");
 
         // Execute this apk itself, invoking main() in ShellButlerService
+        timings.begin("shellLaunch");
         String apkPath = context.getApplicationInfo().publicSourceDir;
         shellProcessTask = adbDevice.shellCommand("CLASSPATH=" + apkPath, "app_process", "/", ShellButlerService.class.getName());
+        timings.end("shellLaunch");
 
-        Log.d(TAG, "ShellButlerService launched, waiting for ButlerApi broadcast");
+        Log.d(TAG, "ShellButlerService launched");
+    }
+
+    /**
+     * Wait for the ShellButlerService launched by {@link #start()} to hand off its ButlerApi
+     *
+     * @return the ButlerApi, or null if it didn't arrive in time
+     */
+    @Nullable
+    ButlerApi awaitButlerApi(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        Log.d(TAG, "Waiting for ButlerApi");
 
-        if (!receiver.received.await(timeout, unit)) {
+        timings.begin("binderHandoffWait");
+        boolean received = receiver.received.await(timeout, unit);
+        timings.end("binderHandoffWait");
+        if (!received) {
             Log.e(TAG, "Timed out waiting for ShellButlerService");
         } else {
             Log.d(TAG, "Received ButlerApi from ShellButlerService");
@@ -141,6 +166,7 @@ class ShellButlerServiceBinder {
             Log.e(TAG, "Failed to shut down ShellButlerService cleanly, future tests may fail!", e);
         }
 
+        ButlerApiHandoffProvider.setListener(null);
         context.unregisterReceiver(receiver);
         receiver = null;
         thread.quit();
@@ -148,7 +174,11 @@ class ShellButlerServiceBinder {
         butlerApi = null;
     }
 
-    private class ButlerApiBroadcastReceiver extends BroadcastReceiver {
+    /**
+     * Receives the ButlerApi either from ButlerApiHandoffProvider or, as a fallback, via broadcast
+     */
+    private class ButlerApiBroadcastReceiver extends BroadcastReceiver
+            implements ButlerApiHandoffProvider.Listener {
         private final CountDownLatch received = new CountDownLatch(1);
 
         @Override
@@ -157,9 +187,16 @@ class ShellButlerServiceBinder {
             Bundle bundle = intent.getBundleExtra(ShellButlerService.BUTLER_API_BUNDLE_KEY);
             if (bundle != null) {
                 IBinder binder = BundleCompat.getBinder(bundle, ShellButlerService.BUTLER_API_BUNDLE_KEY);
-                butlerApi = ButlerApi.Stub.asInterface(binder);
-                received.countDown();
+                if (binder != null) {
+                    onButlerApiReceived(binder);
+                }
             }
         }
+
+        @Override
+        public void onButlerApiReceived(@NonNull IBinder binder) {
+            butlerApi = ButlerApi.Stub.asInterface(binder);
+            received.countDown();
+        }
     }
 }
@@ -22,6 +22,7 @@ import android.os.RemoteException;
 import androidx.annotation.NonNull;
 
 import com.linkedin.android.testbutler.InstalledAccessibilityServiceProvider;
+import com.linkedin.android.testbutler.ServiceManagerWrapper;
 import com.linkedin.android.testbutler.utils.ExceptionCreator;
 import com.linkedin.android.testbutler.utils.ReflectionUtils;
 
@@ -62,4 +63,14 @@ class AccessibilityManagerWrapper implements InstalledAccessibilityServiceProvid
                     "InvocationTargetException during getInstalledAccessibilityServiceList", e);
         }
     }
+
+    /**
+     * Resolve the hidden APIs used to list accessibility services ahead of the first call
+     */
+    void warmUp() throws RemoteException {
+        Object iAccessibilityService = serviceManager.getIService(Context.ACCESSIBILITY_SERVICE,
+                "android.view.accessibility.IAccessibilityManager");
+        ReflectionUtils.getMethod(iAccessibilityService.getClass(),
+                "getInstalledAccessibilityServiceList", int.class);
+    }
 }
@@ -17,16 +17,29 @@ package com.linkedin.android.testbutler.shell;
 
 import android.annotation.TargetApi;
 import android.content.Intent;
+import android.os.Binder;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.IBinder;
+import android.os.Process;
 import android.os.RemoteException;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 
+import com.linkedin.android.testbutler.ServiceManagerWrapper;
 import com.linkedin.android.testbutler.utils.ExceptionCreator;
+import com.linkedin.android.testbutler.utils.ReflectionUtils;
 
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 
+import static com.linkedin.android.testbutler.shell.ShellButlerService.SHELL_PACKAGE;
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.classForName;
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.getField;
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.getMethod;
+
 /**
  * A wrapper to expose hidden APIs in IActivityManager via reflection.
  */
@@ -34,6 +47,7 @@ class ActivityManagerWrapper {
 
     private static final String TAG = ActivityManagerWrapper.class.getSimpleName();
     private static final int CURRENT_USER_ID = -2;
+    private static final int USER_SYSTEM = 0;
 
     private final Method broadcastIntent;
     private final Object iActivityManager;
@@ -72,22 +86,102 @@ class ActivityManagerWrapper {
         }
     }
 
-    static ActivityManagerWrapper newInstance() {
+    /**
+     * Like ContentResolver#call, but usable without a Context. IContentProvider#call gained an
+     * attribution tag on Android R, and takes an AttributionSource instead of the calling package
+     * since Android S; all of these are supported.
+     *
+     * @return the result of the call, which may be null
+     */
+    @Nullable
+    Bundle callContentProvider(@NonNull String authority, @NonNull String method, @Nullable Bundle extras)
+            throws RemoteException {
+        Class<?> iActivityManagerClass = classForName("android.app.IActivityManager");
+        Class<?> iContentProviderClass = classForName("android.content.IContentProvider");
+        Binder token = new Binder();
+
+        Object providerHolder;
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            Method getContentProviderExternal = getMethod(iActivityManagerClass, "getContentProviderExternal",
+                    String.class, int.class, IBinder.class);
+            providerHolder = ReflectionUtils.invoke(getContentProviderExternal, iActivityManager,
+                    authority, USER_SYSTEM, token);
+        } else {
+            Method getContentProviderExternal = getMethod(iActivityManagerClass, "getContentProviderExternal",
+                    String.class, int.class, IBinder.class, String.class);
+            providerHolder = ReflectionUtils.invoke(getContentProviderExternal, iActivityManager,
+                    authority, USER_SYSTEM, token, null);
+        }
+        if (providerHolder == null) {
+            throw ExceptionCreator.createRemoteException(TAG, "No content provider found for " + authority, null);
+        }
+
+        try {
+            Field providerField = getField(providerHolder.getClass(), "provider");
+            providerField.setAccessible(true);
+            Object provider = providerField.get(providerHolder);
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+                Method call = getMethod(iContentProviderClass, "call",
+                        String.class, String.class, String.class, Bundle.class);
+                return (Bundle) ReflectionUtils.invoke(call, provider, SHELL_PACKAGE, method, null, extras);
+            } else if (Build.VERSION.SDK_INT == Build.VERSION_CODES.Q) {
+                Method call = getMethod(iContentProviderClass, "call",
+                        String.class, String.class, String.class, String.class, Bundle.class);
+                return (Bundle) ReflectionUtils.invoke(call, provider, SHELL_PACKAGE, authority, method, null, extras);
+            } else if (Build.VERSION.SDK_INT == Build.VERSION_CODES.Q + 1) {
+                // Android R added the attribution tag (called feature id at first) after the package
+                Method call = getMethod(iContentProviderClass, "call",
+                        String.class, String.class, String.class, String.class, String.class, Bundle.class);
+                return (Bundle) ReflectionUtils.invoke(call, provider, SHELL_PACKAGE, null, authority, method,
+                        null, extras);
+            } else {
+                Class<?> attributionSourceClass = classForName("android.content.AttributionSource");
+                Object attributionSource = newAttributionSource();
+                Method call = getMethod(iContentProviderClass, "call",
+                        attributionSourceClass, String.class, String.class, String.class, Bundle.class);
+                return (Bundle) ReflectionUtils.invoke(call, provider, attributionSource, authority, method,
+                        null, extras);
+            }
+        } catch (IllegalAccessException e) {
+            throw ExceptionCreator.createRemoteException(TAG, "Failed to access content provider " + authority, e);
+        } finally {
+            Method removeContentProviderExternal = getMethod(iActivityManagerClass, "removeContentProviderExternal",
+                    String.class, IBinder.class);
+            ReflectionUtils.invoke(removeContentProviderExternal, iActivityManager, authority, token);
+        }
+    }
+
+    /**
+     * @return an AttributionSource for the shell user, which identifies callers since Android S
+     */
+    @NonNull
+    private static Object newAttributionSource() throws RemoteException {
+        Class<?> builderClass = classForName("android.content.AttributionSource$Builder");
+        Object builder;
+        try {
+            builder = builderClass.getConstructor(int.class).newInstance(Process.myUid());
+        } catch (Exception e) {
+            throw ExceptionCreator.createRemoteException(TAG, "Failed to create an AttributionSource", e);
+        }
+        ReflectionUtils.invoke(getMethod(builderClass, "setPackageName", String.class), builder, SHELL_PACKAGE);
+        return ReflectionUtils.invoke(getMethod(builderClass, "build"), builder);
+    }
+
+    static ActivityManagerWrapper newInstance(@NonNull ServiceManagerWrapper serviceManager) {
         try {
-            Class<?> activityManagerClass = Class.forName("android.app.ActivityManagerNative");
-            Class<?> iApplicationThreadClass = Class.forName("android.app.IApplicationThread");
-            Class<?> iIntentReceiverClass = Class.forName("android.content.IIntentReceiver");
+            Class<?> iApplicationThreadClass = classForName("android.app.IApplicationThread");
+            Class<?> iIntentReceiverClass = classForName("android.content.IIntentReceiver");
 
-            Object iActivityManager = activityManagerClass.getMethod("getDefault").invoke(null);
+            Object iActivityManager = serviceManager.getActivityManager();
 
             Method broadcastIntent;
             if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
-                broadcastIntent = iActivityManager.getClass().getMethod("broadcastIntent",
+                broadcastIntent = getMethod(iActivityManager.getClass(), "broadcastIntent",
                         iApplicationThreadClass, Intent.class, String.class, iIntentReceiverClass,
                         int.class, String.class, Bundle.class, String.class, int.class,
                         boolean.class, boolean.class, int.class);
             } else {
-                broadcastIntent = iActivityManager.getClass().getMethod("broadcastIntent",
+                broadcastIntent = getMethod(iActivityManager.getClass(), "broadcastIntent",
                         iApplicationThreadClass, Intent.class, String.class, iIntentReceiverClass,
                         int.class, String.class, Bundle.class, String[].class, int.class, Bundle.class,
                         boolean.class, boolean.class, int.class);
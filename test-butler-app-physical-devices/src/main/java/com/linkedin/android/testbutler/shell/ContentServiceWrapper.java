@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler.shell;
+
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Build;
+import android.os.RemoteException;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.linkedin.android.testbutler.ServiceManagerWrapper;
+import com.linkedin.android.testbutler.utils.ReflectionUtils;
+
+import java.lang.reflect.Method;
+
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.classForName;
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.getMethod;
+
+
+/**
+ * A wrapper to expose hidden APIs in IContentService via reflection, so that content observers can
+ * be registered without a ContentResolver.
+ */
+class ContentServiceWrapper {
+
+    private static final String TAG = ContentServiceWrapper.class.getSimpleName();
+
+    private static final int USER_SYSTEM = 0;
+
+    private final Object contentService;
+    private final Method registerContentObserver;
+    private final Method unregisterContentObserver;
+    private final Method getContentObserver;
+    private final Method releaseContentObserver;
+
+    private ContentServiceWrapper(Object contentService, Method registerContentObserver,
+                                  Method unregisterContentObserver, Method getContentObserver,
+                                  Method releaseContentObserver) {
+        this.contentService = contentService;
+        this.registerContentObserver = registerContentObserver;
+        this.unregisterContentObserver = unregisterContentObserver;
+        this.getContentObserver = getContentObserver;
+        this.releaseContentObserver = releaseContentObserver;
+    }
+
+    /**
+     * Like ContentResolver#registerContentObserver
+     */
+    boolean registerContentObserver(@NonNull Uri uri, boolean notifyForDescendants,
+                                    @NonNull ContentObserver observer) {
+        try {
+            Object transport = ReflectionUtils.invoke(getContentObserver, observer);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                ReflectionUtils.invoke(registerContentObserver, contentService, uri,
+                        notifyForDescendants, transport, USER_SYSTEM, Build.VERSION.SDK_INT);
+            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                ReflectionUtils.invoke(registerContentObserver, contentService, uri,
+                        notifyForDescendants, transport, USER_SYSTEM);
+            } else {
+                ReflectionUtils.invoke(registerContentObserver, contentService, uri,
+                        notifyForDescendants, transport);
+            }
+            return true;
+        } catch (RemoteException e) {
+            Log.w(TAG, "Failed to register content observer for " + uri, e);
+            return false;
+        }
+    }
+
+    /**
+     * Like ContentResolver#unregisterContentObserver
+     */
+    void unregisterContentObserver(@NonNull ContentObserver observer) {
+        try {
+            Object transport = ReflectionUtils.invoke(releaseContentObserver, observer);
+            if (transport != null) {
+                ReflectionUtils.invoke(unregisterContentObserver, contentService, transport);
+            }
+        } catch (RemoteException e) {
+            Log.w(TAG, "Failed to unregister content observer", e);
+        }
+    }
+
+    @NonNull
+    static ContentServiceWrapper newInstance(@NonNull ServiceManagerWrapper serviceManager) {
+        try {
+            Object contentService = serviceManager.getIService("content", "android.content.IContentService");
+            Class<?> iContentObserverClass = classForName("android.database.IContentObserver");
+
+            Method registerContentObserver;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                registerContentObserver = getMethod(contentService.getClass(), "registerContentObserver",
+                        Uri.class, boolean.class, iContentObserverClass, int.class, int.class);
+            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                registerContentObserver = getMethod(contentService.getClass(), "registerContentObserver",
+                        Uri.class, boolean.class, iContentObserverClass, int.class);
+            } else {
+                registerContentObserver = getMethod(contentService.getClass(), "registerContentObserver",
+                        Uri.class, boolean.class, iContentObserverClass);
+            }
+            Method unregisterContentObserver = getMethod(contentService.getClass(), "unregisterContentObserver",
+                    iContentObserverClass);
+            Method getContentObserver = getMethod(ContentObserver.class, "getContentObserver");
+            Method releaseContentObserver = getMethod(ContentObserver.class, "releaseContentObserver");
+
+            return new ContentServiceWrapper(contentService, registerContentObserver,
+                    unregisterContentObserver, getContentObserver, releaseContentObserver);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to initialize ContentServiceWrapper", e);
+        }
+    }
+}
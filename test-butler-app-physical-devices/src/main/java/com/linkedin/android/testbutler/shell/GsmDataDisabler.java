@@ -21,6 +21,7 @@ import android.net.ConnectivityManager;
 import android.os.Build;
 import android.os.RemoteException;
 
+import com.linkedin.android.testbutler.ServiceManagerWrapper;
 import com.linkedin.android.testbutler.utils.ExceptionCreator;
 
 import java.lang.reflect.Method;
@@ -63,4 +64,20 @@ final class GsmDataDisabler {
         }
         return true;
     }
+
+    /**
+     * Resolve the hidden APIs used to toggle mobile data ahead of the first call
+     */
+    void warmUp() throws RemoteException {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+            return;
+        } else if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            serviceManager.getIService(Context.CONNECTIVITY_SERVICE, "android.net.IConnectivityManager");
+            getMethod(ConnectivityManager.class, "setMobileDataEnabled", boolean.class);
+        } else {
+            Object manager = serviceManager.getIService(ContextWrapper.TELEPHONY_SERVICE, "com.android.internal.telephony.ITelephony");
+            getMethod(manager.getClass(), "enableDataConnectivity");
+            getMethod(manager.getClass(), "disableDataConnectivity");
+        }
+    }
 }
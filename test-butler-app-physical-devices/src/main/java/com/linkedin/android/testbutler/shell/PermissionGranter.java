@@ -22,10 +22,9 @@ import android.os.UserHandle;
 
 import androidx.annotation.NonNull;
 
-import com.linkedin.android.testbutler.utils.ExceptionCreator;
+import com.linkedin.android.testbutler.ServiceManagerWrapper;
 import com.linkedin.android.testbutler.utils.ReflectionUtils;
 
-import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 
 /**
@@ -43,6 +42,8 @@ final class PermissionGranter {
 
     private final ServiceManagerWrapper serviceManager;
 
+    private volatile int userId = -1;
+
     PermissionGranter(ServiceManagerWrapper serviceManager) {
         this.serviceManager = serviceManager;
     }
@@ -54,23 +55,28 @@ final class PermissionGranter {
         Method method = ReflectionUtils.getMethod(iPackageManager.getClass(),
                 "grantRuntimePermission", String.class, String.class, int.class);
 
-        int uid;
-        try {
-            Field user;
-            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
-                user = UserHandle.class.getField("USER_OWNER");
-            } else {
-                user = UserHandle.class.getField("USER_SYSTEM");
-            }
-            uid = (int) user.get(null);
-        } catch (NoSuchFieldException e) {
-            throw ExceptionCreator.createRemoteException(TAG, "NoSuchFieldException during grantRuntimePermission", e);
-        } catch (IllegalAccessException e) {
-            throw ExceptionCreator.createRemoteException(TAG, "IllegalAccessException during grantRuntimePermission", e);
-        }
-
-        ReflectionUtils.invoke(method, iPackageManager, packageName, permission, uid);
+        ReflectionUtils.invoke(method, iPackageManager, packageName, permission, getUserId());
 
         return true;
     }
+
+    /**
+     * Resolve the hidden APIs used to grant permissions ahead of the first call
+     */
+    @TargetApi(Build.VERSION_CODES.M)
+    void warmUp() throws RemoteException {
+        Object iPackageManager = serviceManager.getIService("package", "android.content.pm.IPackageManager");
+        ReflectionUtils.getMethod(iPackageManager.getClass(),
+                "grantRuntimePermission", String.class, String.class, int.class);
+        getUserId();
+    }
+
+    private int getUserId() throws RemoteException {
+        // The id of the device owner never changes, so only read it once
+        if (userId == -1) {
+            userId = ReflectionUtils.getStaticInt(UserHandle.class,
+                    Build.VERSION.SDK_INT < Build.VERSION_CODES.N ? "USER_OWNER" : "USER_SYSTEM");
+        }
+        return userId;
+    }
 }
@@ -28,7 +28,10 @@ import androidx.core.app.BundleCompat;
 import com.linkedin.android.testbutler.AccessibilityServiceEnabler;
 import com.linkedin.android.testbutler.ButlerApi;
 import com.linkedin.android.testbutler.ButlerApiStubBase;
+import com.linkedin.android.testbutler.ButlerStats;
 import com.linkedin.android.testbutler.NoDialogActivityController;
+import com.linkedin.android.testbutler.ServiceManagerWrapper;
+import com.linkedin.android.testbutler.StartupTimings;
 
 import java.io.Closeable;
 import java.util.concurrent.CountDownLatch;
@@ -49,23 +52,42 @@ public class ShellButlerService implements Closeable {
     public static final String BUTLER_API_BUNDLE_KEY = "ButlerApi";
     public static final int KILL_CODE = ButlerApi.Stub.LAST_CALL_TRANSACTION;
 
+    public static final String HANDOFF_AUTHORITY = "com.linkedin.android.testbutler.butlerapi";
+    public static final String HANDOFF_METHOD = "handOffButlerApi";
+    public static final String HANDOFF_ACCEPTED_KEY = "accepted";
+
     static final String SHELL_PACKAGE = "com.android.shell";
 
     private final CountDownLatch stop = new CountDownLatch(1);
+    // The ButlerApi is handed off before onCreate, so calls have to wait until it has finished
+    private final CountDownLatch ready = new CountDownLatch(1);
+    private volatile boolean created;
     private final ShellSettingsAccessor settings;
+    private final ServiceManagerWrapper serviceManager;
 
     private GsmDataDisabler gsmDataDisabler;
     private PermissionGranter permissionGranter;
     private WifiManagerWrapper wifiManager;
     private AccessibilityServiceEnabler accessibilityServiceEnabler;
 
-    private final ButlerApiStubBase butlerApi = new ButlerApiStubBase() {
+    private final ButlerApiStubBase butlerApi;
+
+    private final class ShellButlerApi extends ButlerApiStubBase {
+        private ShellButlerApi(@NonNull ButlerStats stats, @NonNull ServiceManagerWrapper serviceManager) {
+            super(stats, serviceManager);
+        }
+
         @Override
         public boolean onTransact(int code, Parcel data, Parcel reply, int flags) throws RemoteException {
             if (code == KILL_CODE) {
                 stop.countDown();
                 return true;
             }
+            awaitReady();
+            if (!created) {
+                // Reported to the caller, instead of running against a half initialized service
+                throw new IllegalStateException("ShellButlerService failed to start");
+            }
             return super.onTransact(code, data, reply, flags);
         }
 
@@ -78,6 +100,12 @@ public class ShellButlerService implements Closeable {
             return wifiManager.setWifiEnabled(enabled);
         }
 
+        @Override
+        protected boolean canChangeWifiState() {
+            // Before 8.1, ButlerService restores wifi itself (see setWifiState)
+            return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1;
+        }
+
         @Override
         public boolean setGsmState(boolean enabled) throws RemoteException {
             return gsmDataDisabler.setGsmState(enabled);
@@ -92,33 +120,99 @@ public class ShellButlerService implements Closeable {
         public boolean setAccessibilityServiceState(boolean enabled) throws RemoteException {
             return accessibilityServiceEnabler.setAccessibilityServiceEnabled(enabled);
         }
-    };
 
-    private ShellButlerService(@NonNull ShellSettingsAccessor settings) {
+        @Override
+        public boolean setWifiStateAndWait(boolean enabled, long timeoutMs) throws RemoteException {
+            Log.e(TAG, "setWifiStateAndWait should be handled by ButlerService, not ShellButlerService");
+            return false;
+        }
+
+        @Override
+        public boolean setGsmStateAndWait(boolean enabled, long timeoutMs) throws RemoteException {
+            Log.e(TAG, "setGsmStateAndWait should be handled by ButlerService, not ShellButlerService");
+            return false;
+        }
+
+        @Override
+        public boolean setRotationAndWait(int rotation, long timeoutMs) throws RemoteException {
+            Log.e(TAG, "setRotationAndWait should be handled by ButlerService, not ShellButlerService");
+            return false;
+        }
+    }
+
+    private void awaitReady() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                ready.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param stats The counters reported through the ButlerApi, which serviceManager also records in
+     */
+    private ShellButlerService(@NonNull ShellSettingsAccessor settings,
+                               @NonNull ServiceManagerWrapper serviceManager,
+                               @NonNull ButlerStats stats) {
         this.settings = settings;
+        this.serviceManager = serviceManager;
+        this.butlerApi = new ShellButlerApi(stats, serviceManager);
     }
 
     private void onCreate() {
         Log.d(TAG, "ShellButlerService starting up...");
 
-        ServiceManagerWrapper serviceManager = ServiceManagerWrapper.newInstance();
-
         gsmDataDisabler = new GsmDataDisabler(serviceManager);
         permissionGranter = new PermissionGranter(serviceManager);
-        AccessibilityManagerWrapper accessibilityWrapper = new AccessibilityManagerWrapper(serviceManager);
+        final AccessibilityManagerWrapper accessibilityWrapper = new AccessibilityManagerWrapper(serviceManager);
         accessibilityServiceEnabler = new AccessibilityServiceEnabler(accessibilityWrapper, settings);
 
+        // Resolve services and hidden APIs in the background, so the first real call doesn't pay for it
+        Thread warmUpThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                        permissionGranter.warmUp();
+                    }
+                    gsmDataDisabler.warmUp();
+                    accessibilityWrapper.warmUp();
+                } catch (RemoteException e) {
+                    // The same failure will be reported when the API is actually used
+                    Log.w(TAG, "Failed to resolve hidden APIs ahead of time", e);
+                }
+            }
+        }, "ButlerReflectionWarmUp");
+        warmUpThread.setDaemon(true);
+        warmUpThread.start();
+
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
             wifiManager = WifiManagerWrapper.getInstance(serviceManager);
         }
 
+        StartupTimings timings = butlerApi.getTimings();
+        timings.begin("stateCapture");
         butlerApi.onCreate(settings);
+        timings.end("stateCapture");
 
         // Install custom IActivityController to prevent system dialogs from appearing if apps crash or ANR
+        timings.begin("noDialogInstall");
         NoDialogActivityController.install();
+        timings.end("noDialogInstall");
     }
 
     private void onDestroy() {
+        if (!created) {
+            Log.w(TAG, "ShellButlerService did not finish starting up, skipping shut down");
+            return;
+        }
         Log.d(TAG, "ShellButlerService shutting down...");
 
         butlerApi.onDestroy();
@@ -139,6 +233,25 @@ public class ShellButlerService implements Closeable {
         onDestroy();
     }
 
+    /**
+     * Hand the ButlerApi to ButlerService through its ButlerApiHandoffProvider, which is much faster
+     * than a broadcast when the broadcast queue is busy
+     *
+     * @return true if ButlerService accepted the ButlerApi
+     */
+    private boolean handOffButlerApi() {
+        Bundle bundle = new Bundle();
+        BundleCompat.putBinder(bundle, BUTLER_API_BUNDLE_KEY, butlerApi);
+        try {
+            Bundle result = ActivityManagerWrapper.newInstance(serviceManager)
+                    .callContentProvider(HANDOFF_AUTHORITY, HANDOFF_METHOD, bundle);
+            return result != null && result.getBoolean(HANDOFF_ACCEPTED_KEY);
+        } catch (RuntimeException | RemoteException e) {
+            Log.w(TAG, "Failed to hand off ButlerApi through content provider", e);
+            return false;
+        }
+    }
+
     private void broadcastButlerApi() throws Exception {
         Intent intent = new Intent(BROADCAST_BUTLER_API_ACTION);
 
@@ -146,14 +259,30 @@ public class ShellButlerService implements Closeable {
         BundleCompat.putBinder(bundle, BUTLER_API_BUNDLE_KEY, butlerApi);
         intent.putExtra(BUTLER_API_BUNDLE_KEY, bundle);
 
-        ActivityManagerWrapper.newInstance().broadcastIntent(intent);
+        ActivityManagerWrapper.newInstance(serviceManager).broadcastIntent(intent);
     }
 
     public static void main(String[] args) {
-        try (ShellSettingsAccessor settings = ShellSettingsAccessor.newInstance();
-             ShellButlerService shellButlerService = new ShellButlerService(settings)) {
-            shellButlerService.onCreate();
-            shellButlerService.broadcastButlerApi();
+        ButlerStats stats = new ButlerStats();
+        ServiceManagerWrapper serviceManager = ServiceManagerWrapper.newInstance(stats);
+        try (ShellSettingsAccessor settings = ShellSettingsAccessor.newInstance(serviceManager);
+             ShellButlerService shellButlerService = new ShellButlerService(settings, serviceManager, stats)) {
+            // Publish the ButlerApi first, so ButlerService can finish starting up while the slower
+            // state capture in onCreate runs; calls block until it is done
+            StartupTimings timings = shellButlerService.butlerApi.getTimings();
+            timings.begin("binderHandoff");
+            if (!shellButlerService.handOffButlerApi()) {
+                Log.d(TAG, "Falling back to broadcasting ButlerApi");
+                shellButlerService.broadcastButlerApi();
+            }
+            timings.end("binderHandoff");
+            try {
+                shellButlerService.onCreate();
+                shellButlerService.created = true;
+            } finally {
+                // Release pending calls even if onCreate failed, so they fail instead of blocking
+                shellButlerService.ready.countDown();
+            }
             Log.d(TAG, "ButlerApi sent, waiting for stop");
             shellButlerService.stop.await();
         } catch (Exception e) {
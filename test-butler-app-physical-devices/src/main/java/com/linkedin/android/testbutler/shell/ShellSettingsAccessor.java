@@ -15,6 +15,8 @@
  */
 package com.linkedin.android.testbutler.shell;
 
+import android.database.ContentObserver;
+import android.net.Uri;
 import android.os.Binder;
 import android.os.Build;
 import android.os.Bundle;
@@ -25,13 +27,19 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.linkedin.android.testbutler.ServiceManagerWrapper;
 import com.linkedin.android.testbutler.SettingsAccessor;
+import com.linkedin.android.testbutler.SettingsSnapshot;
 
 import java.io.Closeable;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.List;
 
 import static com.linkedin.android.testbutler.shell.ShellButlerService.SHELL_PACKAGE;
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.classForName;
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.getField;
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.getMethod;
 
 
 /**
@@ -43,6 +51,7 @@ class ShellSettingsAccessor implements SettingsAccessor, Closeable {
     private static final String TAG = ShellSettingsAccessor.class.getSimpleName();
 
     private static final String AUTHORITY = "settings";
+    private static final String RESULT_SETTINGS_LIST = "result_settings_list";
 
     private final Object provider;
     private final Method call;
@@ -50,6 +59,7 @@ class ShellSettingsAccessor implements SettingsAccessor, Closeable {
     private final Method removeContentProviderExternal;
     private final Object activityManager;
     private final Binder token;
+    private final ContentServiceWrapper contentService;
 
     private final ShellLocationModeSetting locationModeSetting;
 
@@ -59,13 +69,14 @@ class ShellSettingsAccessor implements SettingsAccessor, Closeable {
 
     private ShellSettingsAccessor(Object provider, Method call, Method getPairValue,
                                   Method removeContentProviderExternal, Object activityManager,
-                                  Binder token) {
+                                  Binder token, @Nullable ContentServiceWrapper contentService) {
         this.provider = provider;
         this.call = call;
         this.getPairValue = getPairValue;
         this.removeContentProviderExternal = removeContentProviderExternal;
         this.activityManager = activityManager;
         this.token = token;
+        this.contentService = contentService;
 
         this.global = new Global();
         this.system = new System();
@@ -75,13 +86,13 @@ class ShellSettingsAccessor implements SettingsAccessor, Closeable {
     }
 
     @NonNull
-    static ShellSettingsAccessor newInstance() throws Exception {
+    static ShellSettingsAccessor newInstance(@NonNull ServiceManagerWrapper serviceManager) throws Exception {
         try {
-            Class<?> activityManagerClass = Class.forName("android.app.ActivityManagerNative");
-            Class<?> iActivityManagerClass = Class.forName("android.app.IActivityManager");
-            Class<?> iContentProviderClass = Class.forName("android.content.IContentProvider");
+            Class<?> activityManagerClass = classForName("android.app.ActivityManagerNative");
+            Class<?> iActivityManagerClass = classForName("android.app.IActivityManager");
+            Class<?> iContentProviderClass = classForName("android.content.IContentProvider");
 
-            Method getDefault = activityManagerClass.getMethod("getDefault");
+            Method getDefault = getMethod(activityManagerClass, "getDefault");
             getDefault.setAccessible(true);  // not sure if this is necessary
 
             Method getContentProviderExternal;
@@ -90,28 +101,35 @@ class ShellSettingsAccessor implements SettingsAccessor, Closeable {
             Method callMethod;
 
             if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
-                getContentProviderExternal = iActivityManagerClass.getMethod("getContentProviderExternal", String.class, int.class, IBinder.class);
+                getContentProviderExternal = getMethod(iActivityManagerClass, "getContentProviderExternal", String.class, int.class, IBinder.class);
                 getContentProviderExternalArgs = new Object[] {AUTHORITY, 0, token};
-                callMethod = iContentProviderClass.getMethod("call", String.class, String.class, String.class, Bundle.class);
+                callMethod = getMethod(iContentProviderClass, "call", String.class, String.class, String.class, Bundle.class);
             } else {
-                getContentProviderExternal = iActivityManagerClass.getMethod("getContentProviderExternal", String.class, int.class, IBinder.class, String.class);
+                getContentProviderExternal = getMethod(iActivityManagerClass, "getContentProviderExternal", String.class, int.class, IBinder.class, String.class);
                 getContentProviderExternalArgs = new Object[] {AUTHORITY, 0, token, null};
-                callMethod = iContentProviderClass.getMethod("call", String.class, String.class, String.class, String.class, Bundle.class);
+                callMethod = getMethod(iContentProviderClass, "call", String.class, String.class, String.class, String.class, Bundle.class);
             }
 
-            Method removeContentProviderExternal = iActivityManagerClass.getMethod("removeContentProviderExternal", String.class, IBinder.class);
-            Method getPairValue = Bundle.class.getMethod("getPairValue");
+            Method removeContentProviderExternal = getMethod(iActivityManagerClass, "removeContentProviderExternal", String.class, IBinder.class);
+            Method getPairValue = getMethod(Bundle.class, "getPairValue");
 
             Object activityManager = getDefault.invoke(null);
             Object providerHolder = getContentProviderExternal.invoke(activityManager, getContentProviderExternalArgs);
 
             try {
-                Field providerField = providerHolder.getClass().getField("provider");
+                Field providerField = getField(providerHolder.getClass(), "provider");
                 providerField.setAccessible(true);
                 Object provider = providerField.get(providerHolder);
 
+                ContentServiceWrapper contentService = null;
+                try {
+                    contentService = ContentServiceWrapper.newInstance(serviceManager);
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Settings observers will not work", e);
+                }
+
                 return new ShellSettingsAccessor(provider, callMethod, getPairValue,
-                        removeContentProviderExternal, activityManager, token);
+                        removeContentProviderExternal, activityManager, token, contentService);
             } catch (Exception e) {
                 removeContentProviderExternal.invoke(activityManager, "settings", token);
                 throw e;
@@ -147,15 +165,87 @@ class ShellSettingsAccessor implements SettingsAccessor, Closeable {
         return secure;
     }
 
+    @Override
+    public boolean registerContentObserver(@NonNull Uri uri, boolean notifyForDescendants,
+                                           @NonNull ContentObserver observer) {
+        return contentService != null
+                && contentService.registerContentObserver(uri, notifyForDescendants, observer);
+    }
+
+    @Override
+    public void unregisterContentObserver(@NonNull ContentObserver observer) {
+        if (contentService != null) {
+            contentService.unregisterContentObserver(observer);
+        }
+    }
+
     class Namespace implements SettingsAccessor.Namespace {
         private final String name;
         private final String getMethod;
         private final String putMethod;
+        private final String listMethod;
+        private final Uri contentUri;
 
         private Namespace(String name, String getMethod, String putMethod) {
             this.name = name;
             this.getMethod = getMethod;
             this.putMethod = putMethod;
+            this.listMethod = "LIST_" + name;
+            this.contentUri = Uri.parse("content://" + AUTHORITY + "/" + name);
+        }
+
+        @NonNull
+        @Override
+        public Uri getUri() {
+            return contentUri;
+        }
+
+        @NonNull
+        @Override
+        public Uri getUriFor(@NonNull String key) {
+            return Uri.withAppendedPath(contentUri, key);
+        }
+
+        @Nullable
+        @Override
+        public SettingsSnapshot snapshot() {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+                // The settings provider only supports listing a namespace via call since 8.0
+                Log.w(TAG, "Settings snapshots are not supported before 8.0");
+                return null;
+            }
+            Bundle arg = new Bundle();
+            arg.putInt("_user", 0);
+
+            try {
+                Bundle b;
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+                    b = (Bundle) call.invoke(provider, SHELL_PACKAGE, listMethod, null, arg);
+                } else {
+                    b = (Bundle) call.invoke(provider, SHELL_PACKAGE, AUTHORITY, listMethod, null, arg);
+                }
+                if (b == null) {
+                    return null;
+                }
+                List<String> lines = b.getStringArrayList(RESULT_SETTINGS_LIST);
+                if (lines == null) {
+                    return null;
+                }
+                SettingsSnapshot.Builder builder = new SettingsSnapshot.Builder();
+                for (String line : lines) {
+                    // Each line is "name=value", and a missing value is listed as "null"
+                    int separator = line.indexOf('=');
+                    if (separator < 0) {
+                        continue;
+                    }
+                    String value = line.substring(separator + 1);
+                    builder.put(line.substring(0, separator), "null".equals(value) ? null : value);
+                }
+                return builder.build();
+            } catch (Exception e) {
+                Log.w(TAG, "Failed to list settings: " + name, e);
+                return null;
+            }
         }
 
         @Override
@@ -30,6 +30,9 @@ import java.io.Closeable;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.classForName;
+import static com.linkedin.android.testbutler.utils.ReflectionUtils.getMethod;
+
 
 /**
  * A wrapper to expose hidden APIs in IUiAutomationConnection via reflection.
@@ -59,11 +62,11 @@ class UiAutomationConnectionWrapper implements Closeable {
     @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN_MR2)
     static UiAutomationConnectionWrapper newInstance() throws Exception {
         try {
-            Class<?> iUiAutomationConnection = Class.forName("android.app.IUiAutomationConnection");
-            Class<?> uiAutomationConnectionClass = Class.forName("android.app.UiAutomationConnection");
+            Class<?> iUiAutomationConnection = classForName("android.app.IUiAutomationConnection");
+            Class<?> uiAutomationConnectionClass = classForName("android.app.UiAutomationConnection");
             Constructor<UiAutomation> uiAutomationConstructor = UiAutomation.class.getConstructor(Looper.class, iUiAutomationConnection);
-            Method connectMethod = UiAutomation.class.getMethod("connect");
-            Method disconnectMethod = UiAutomation.class.getMethod("disconnect");
+            Method connectMethod = getMethod(UiAutomation.class, "connect");
+            Method disconnectMethod = getMethod(UiAutomation.class, "disconnect");
 
             HandlerThread thread = new HandlerThread("UiAutomatorHandlerThread");
             thread.start();
@@ -1,8 +1,12 @@
 package com.linkedin.android.testbutler;
 
 import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
 import android.os.Build;
 import android.provider.Settings;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -14,6 +18,13 @@ import androidx.annotation.RequiresApi;
  * {@link Settings} APIs. Requires the application or service {@link ContentResolver}.
  */
 public class AppSettingsAccessor implements SettingsAccessor {
+    private static final String TAG = AppSettingsAccessor.class.getSimpleName();
+
+    private static final String[] SNAPSHOT_PROJECTION = {
+            Settings.NameValueTable.NAME,
+            Settings.NameValueTable.VALUE
+    };
+
     private final ContentResolver contentResolver;
     private final Namespace global;
     private final System system;
@@ -50,6 +61,44 @@ public class AppSettingsAccessor implements SettingsAccessor {
         return secure;
     }
 
+    @Override
+    public boolean registerContentObserver(@NonNull Uri uri, boolean notifyForDescendants,
+                                           @NonNull ContentObserver observer) {
+        contentResolver.registerContentObserver(uri, notifyForDescendants, observer);
+        return true;
+    }
+
+    @Override
+    public void unregisterContentObserver(@NonNull ContentObserver observer) {
+        contentResolver.unregisterContentObserver(observer);
+    }
+
+    /**
+     * Read every setting in a namespace with a single provider query
+     */
+    @Nullable
+    private SettingsSnapshot query(@NonNull Uri uri) {
+        Cursor cursor;
+        try {
+            cursor = contentResolver.query(uri, SNAPSHOT_PROJECTION, null, null, null);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to query settings: " + uri, e);
+            return null;
+        }
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            SettingsSnapshot.Builder builder = new SettingsSnapshot.Builder();
+            while (cursor.moveToNext()) {
+                builder.put(cursor.getString(0), cursor.getString(1));
+            }
+            return builder.build();
+        } finally {
+            cursor.close();
+        }
+    }
+
     @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN_MR1)
     private final class Global implements Namespace {
         @Nullable
@@ -72,6 +121,24 @@ public class AppSettingsAccessor implements SettingsAccessor {
         public boolean putInt(@NonNull String key, int value) {
             return Settings.Global.putInt(contentResolver, key, value);
         }
+
+        @NonNull
+        @Override
+        public Uri getUri() {
+            return Settings.Global.CONTENT_URI;
+        }
+
+        @NonNull
+        @Override
+        public Uri getUriFor(@NonNull String key) {
+            return Settings.Global.getUriFor(key);
+        }
+
+        @Nullable
+        @Override
+        public SettingsSnapshot snapshot() {
+            return query(Settings.Global.CONTENT_URI);
+        }
     }
 
     private final class System implements Namespace {
@@ -95,6 +162,24 @@ public class AppSettingsAccessor implements SettingsAccessor {
         public boolean putInt(@NonNull String key, int value) {
             return Settings.System.putInt(contentResolver, key, value);
         }
+
+        @NonNull
+        @Override
+        public Uri getUri() {
+            return Settings.System.CONTENT_URI;
+        }
+
+        @NonNull
+        @Override
+        public Uri getUriFor(@NonNull String key) {
+            return Settings.System.getUriFor(key);
+        }
+
+        @Nullable
+        @Override
+        public SettingsSnapshot snapshot() {
+            return query(Settings.System.CONTENT_URI);
+        }
     }
 
     private final class Secure implements Namespace {
@@ -118,5 +203,23 @@ public class AppSettingsAccessor implements SettingsAccessor {
         public boolean putInt(@NonNull String key, int value) {
             return Settings.Secure.putInt(contentResolver, key, value);
         }
+
+        @NonNull
+        @Override
+        public Uri getUri() {
+            return Settings.Secure.CONTENT_URI;
+        }
+
+        @NonNull
+        @Override
+        public Uri getUriFor(@NonNull String key) {
+            return Settings.Secure.getUriFor(key);
+        }
+
+        @Nullable
+        @Override
+        public SettingsSnapshot snapshot() {
+            return query(Settings.Secure.CONTENT_URI);
+        }
     }
 }
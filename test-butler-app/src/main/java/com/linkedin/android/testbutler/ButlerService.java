@@ -29,6 +29,7 @@ import androidx.annotation.Nullable;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Main entry point into the Test Butler application.
@@ -47,17 +48,48 @@ public class ButlerService extends Service {
     private CommonDeviceLocks locks;
     private AccessibilityServiceEnabler accessibilityServiceEnabler;
     private AccessibilityServiceWaiter accessibilityServiceWaiter;
+    private ConnectivityWaiter connectivityWaiter;
+    private RotationWaiter rotationWaiter;
+    private LocaleWaiter localeWaiter;
 
     private ButlerApiStubBase butlerApi = new ButlerApiStubBase() {
         @Override
         public boolean setWifiState(boolean enabled) throws RemoteException {
-            WifiManager wifiManager = (WifiManager) getApplicationContext().getSystemService(WIFI_SERVICE);
-            return wifiManager.setWifiEnabled(enabled);
+            // Keep the IdlingResource busy until the connectivity change has settled
+            ConnectivityWaiter.Wait wait = connectivityWaiter.waitForWifi(enabled);
+            if (!setWifiEnabled(enabled)) {
+                wait.cancel();
+                return false;
+            }
+            getPendingOperations().track(wait);
+            return true;
         }
 
         @Override
         public boolean setGsmState(boolean enabled) throws RemoteException {
-            return gsmDataDisabler.setGsmState(ButlerService.this, enabled);
+            ConnectivityWaiter.Wait wait = connectivityWaiter.waitForMobileData(enabled);
+            try {
+                if (!gsmDataDisabler.setGsmState(ButlerService.this, enabled)) {
+                    wait.cancel();
+                    return false;
+                }
+            } catch (RemoteException e) {
+                wait.cancel();
+                throw e;
+            }
+            getPendingOperations().track(wait);
+            return true;
+        }
+
+        @Override
+        public boolean setRotation(int rotation) throws RemoteException {
+            RotationWaiter.Wait wait = rotationWaiter.waitForRotation(rotation);
+            if (!super.setRotation(rotation)) {
+                wait.cancel();
+                return false;
+            }
+            getPendingOperations().track(wait);
+            return true;
         }
 
         @Override
@@ -73,8 +105,58 @@ public class ButlerService extends Service {
             }
             return successful;
         }
+
+        @Override
+        public boolean setWifiStateAndWait(boolean enabled, long timeoutMs) throws RemoteException {
+            ConnectivityWaiter.Wait wait = connectivityWaiter.waitForWifi(enabled);
+            if (!setWifiEnabled(enabled)) {
+                wait.cancel();
+                return false;
+            }
+            return wait.await(timeoutMs);
+        }
+
+        @Override
+        public boolean setGsmStateAndWait(boolean enabled, long timeoutMs) throws RemoteException {
+            ConnectivityWaiter.Wait wait = connectivityWaiter.waitForMobileData(enabled);
+            try {
+                if (!gsmDataDisabler.setGsmState(ButlerService.this, enabled)) {
+                    wait.cancel();
+                    return false;
+                }
+            } catch (RemoteException e) {
+                wait.cancel();
+                throw e;
+            }
+            return wait.await(timeoutMs);
+        }
+
+        @Override
+        public boolean setRotationAndWait(int rotation, long timeoutMs) throws RemoteException {
+            RotationWaiter.Wait wait = rotationWaiter.waitForRotation(rotation);
+            if (!super.setRotation(rotation)) {
+                wait.cancel();
+                return false;
+            }
+            return wait.await(timeoutMs);
+        }
+
+        @Override
+        public boolean setSystemLocale(String language, String country, long timeoutMs) throws RemoteException {
+            LocaleWaiter.Wait wait = localeWaiter.waitForLocale(new Locale(language, country));
+            if (!super.setSystemLocale(language, country, timeoutMs)) {
+                wait.cancel();
+                return false;
+            }
+            return wait.await(timeoutMs);
+        }
     };
 
+    private boolean setWifiEnabled(boolean enabled) {
+        WifiManager wifiManager = (WifiManager) getApplicationContext().getSystemService(WIFI_SERVICE);
+        return wifiManager.setWifiEnabled(enabled);
+    }
+
     @Override
     public void onCreate() {
         super.onCreate();
@@ -99,13 +181,23 @@ public class ButlerService extends Service {
         };
         accessibilityServiceEnabler = new AccessibilityServiceEnabler(serviceProvider, settings);
         accessibilityServiceWaiter = new AccessibilityServiceWaiter();
+        connectivityWaiter = new ConnectivityWaiter(this);
+        rotationWaiter = new RotationWaiter(this);
+        localeWaiter = new LocaleWaiter(this);
+        StartupTimings timings = butlerApi.getTimings();
+        timings.begin("locksAcquire");
         locks = new CommonDeviceLocks();
         locks.acquire(this);
+        timings.end("locksAcquire");
 
+        timings.begin("stateCapture");
         butlerApi.onCreate(settings);
+        timings.end("stateCapture");
 
         // Install custom IActivityController to prevent system dialogs from appearing if apps crash or ANR
+        timings.begin("noDialogInstall");
         NoDialogActivityController.install();
+        timings.end("noDialogInstall");
     }
 
     @Override
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler.demo;
+
+import android.os.Build;
+import android.provider.Settings;
+
+import com.linkedin.android.testbutler.SettingsNamespaces;
+import com.linkedin.android.testbutler.TestButler;
+
+import org.junit.After;
+import org.junit.Test;
+
+import androidx.test.filters.SdkSuppress;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@SdkSuppress(minSdkVersion = Build.VERSION_CODES.JELLY_BEAN_MR1)
+public class AwaitSettingTest {
+    private static final long TIMEOUT_MS = 5000;
+
+    @After
+    public void teardown() {
+        TestButler.setAlwaysFinishActivities(false);
+    }
+
+    @Test
+    public void awaitSettingReturnsWhenSettingChanges() throws InterruptedException {
+        TestButler.setAlwaysFinishActivities(false);
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                TestButler.setAlwaysFinishActivities(true);
+            }
+        });
+        thread.start();
+
+        assertTrue(TestButler.awaitSetting(SettingsNamespaces.GLOBAL,
+                Settings.Global.ALWAYS_FINISH_ACTIVITIES, "1", TIMEOUT_MS));
+        thread.join();
+    }
+
+    @Test
+    public void awaitSettingTimesOut() {
+        TestButler.setAlwaysFinishActivities(false);
+
+        assertFalse(TestButler.awaitSetting(SettingsNamespaces.GLOBAL,
+                Settings.Global.ALWAYS_FINISH_ACTIVITIES, "1", 100));
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler.demo;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.os.Build;
+import android.provider.Settings;
+
+import com.linkedin.android.testbutler.SettingsNamespaces;
+import com.linkedin.android.testbutler.TestButler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.filters.SdkSuppress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@SdkSuppress(minSdkVersion = Build.VERSION_CODES.JELLY_BEAN_MR1)
+public class BulkSettingsTest {
+    // Settings.Secure.SPELL_CHECKER_ENABLED is hidden
+    private static final String SPELL_CHECKER_ENABLED = "spell_checker_enabled";
+    private static final String MISSING_SETTING = "test_butler_missing_setting";
+
+    private ContentResolver contentResolver;
+
+    @Before
+    public void setup() {
+        Context context = ApplicationProvider.getApplicationContext();
+        contentResolver = context.getContentResolver();
+    }
+
+    @After
+    public void teardown() {
+        TestButler.setAlwaysFinishActivities(false);
+        TestButler.setSpellCheckerState(false);
+    }
+
+    @Test
+    public void putSettingsWritesAllValues() {
+        Map<String, String> values = new HashMap<>();
+        values.put(Settings.Global.ALWAYS_FINISH_ACTIVITIES, "1");
+        TestButler.putSettings(SettingsNamespaces.GLOBAL, values);
+        TestButler.putSettings(SettingsNamespaces.SECURE,
+                Collections.singletonMap(SPELL_CHECKER_ENABLED, "1"));
+
+        assertEquals("1", Settings.Global.getString(contentResolver, Settings.Global.ALWAYS_FINISH_ACTIVITIES));
+        assertEquals("1", Settings.Secure.getString(contentResolver, SPELL_CHECKER_ENABLED));
+    }
+
+    @Test
+    public void getSettingsReadsAllValues() {
+        TestButler.setAlwaysFinishActivities(true);
+
+        Map<String, String> values = TestButler.getSettings(SettingsNamespaces.GLOBAL,
+                Settings.Global.ALWAYS_FINISH_ACTIVITIES, MISSING_SETTING);
+
+        assertEquals(2, values.size());
+        assertEquals("1", values.get(Settings.Global.ALWAYS_FINISH_ACTIVITIES));
+        assertNull(values.get(MISSING_SETTING));
+    }
+}
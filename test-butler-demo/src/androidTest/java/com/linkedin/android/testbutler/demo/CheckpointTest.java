@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler.demo;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.provider.Settings;
+import android.view.Surface;
+
+import com.linkedin.android.testbutler.TestButler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class CheckpointTest {
+    private ContentResolver contentResolver;
+
+    @Before
+    public void setup() {
+        Context context = ApplicationProvider.getApplicationContext();
+        contentResolver = context.getContentResolver();
+    }
+
+    @Test
+    public void resetToCheckpointRestoresChangedSettings() {
+        TestButler.setAlwaysFinishActivities(false);
+        TestButler.setRotation(Surface.ROTATION_0);
+        TestButler.checkpoint();
+
+        TestButler.setAlwaysFinishActivities(true);
+        TestButler.setRotation(Surface.ROTATION_90);
+        assertEquals(1, getGlobalInt(Settings.Global.ALWAYS_FINISH_ACTIVITIES));
+        assertEquals(Surface.ROTATION_90, getSystemInt(Settings.System.USER_ROTATION));
+
+        TestButler.resetToCheckpoint();
+        assertEquals(0, getGlobalInt(Settings.Global.ALWAYS_FINISH_ACTIVITIES));
+        assertEquals(Surface.ROTATION_0, getSystemInt(Settings.System.USER_ROTATION));
+    }
+
+    private int getGlobalInt(String key) {
+        try {
+            return Settings.Global.getInt(contentResolver, key);
+        } catch (Settings.SettingNotFoundException e) {
+            fail();
+            return -1;
+        }
+    }
+
+    private int getSystemInt(String key) {
+        try {
+            return Settings.System.getInt(contentResolver, key);
+        } catch (Settings.SettingNotFoundException e) {
+            fail();
+            return -1;
+        }
+    }
+}
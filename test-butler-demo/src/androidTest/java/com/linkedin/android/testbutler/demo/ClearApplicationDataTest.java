@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler.demo;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+
+import com.linkedin.android.testbutler.TestButler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNoException;
+
+public class ClearApplicationDataTest {
+
+    private static final String UNKNOWN_PACKAGE = "com.linkedin.android.testbutler.demo.unknown";
+    // Clearing or stopping this app (or the test apk, whose code it runs) would kill the test, so a
+    // stock app without any state worth keeping is used instead
+    private static final String HELPER_PACKAGE = "com.android.htmlviewer";
+
+    private PackageManager packageManager;
+
+    @Before
+    public void setup() {
+        Context context = ApplicationProvider.getApplicationContext();
+        packageManager = context.getPackageManager();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void clearingUnknownPackageFails() {
+        TestButler.clearApplicationData(UNKNOWN_PACKAGE);
+    }
+
+    @Test
+    public void clearingInstalledPackageSucceeds() {
+        getHelperApplicationInfo();
+
+        // Throws unless the package data observer reported success
+        TestButler.clearApplicationData(HELPER_PACKAGE);
+    }
+
+    @Test
+    public void forceStoppedPackageIsStopped() {
+        getHelperApplicationInfo();
+
+        TestButler.forceStopPackage(HELPER_PACKAGE);
+
+        assertTrue((getHelperApplicationInfo().flags & ApplicationInfo.FLAG_STOPPED) != 0);
+    }
+
+    private ApplicationInfo getHelperApplicationInfo() {
+        try {
+            return packageManager.getApplicationInfo(HELPER_PACKAGE, 0);
+        } catch (PackageManager.NameNotFoundException e) {
+            assumeNoException(e);
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler.demo;
+
+import android.app.usage.UsageStatsManager;
+import android.content.Context;
+import android.os.Build;
+import android.os.PowerManager;
+
+import com.linkedin.android.testbutler.TestButler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.filters.SdkSuppress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@SdkSuppress(minSdkVersion = Build.VERSION_CODES.P)
+public class DeviceIdleTest {
+
+    private Context context;
+
+    @Before
+    public void setup() {
+        context = ApplicationProvider.getApplicationContext();
+    }
+
+    @After
+    public void teardown() {
+        TestButler.setForceIdle(false);
+        TestButler.setDozeEnabled(true);
+    }
+
+    @Test
+    public void deviceIsIdleWhileForcedIdle() {
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+
+        TestButler.setForceIdle(true);
+        assertTrue(powerManager.isDeviceIdleMode());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void forceIdleFailsWhileDozeIsDisabled() {
+        TestButler.setDozeEnabled(false);
+        TestButler.setForceIdle(true);
+    }
+
+    @Test
+    public void appIsActiveAfterSettingStandbyBucket() {
+        UsageStatsManager usageStatsManager = (UsageStatsManager) context.getSystemService(Context.USAGE_STATS_SERVICE);
+
+        TestButler.setAppStandbyBucket(context.getPackageName(), UsageStatsManager.STANDBY_BUCKET_ACTIVE);
+        assertEquals(UsageStatsManager.STANDBY_BUCKET_ACTIVE, usageStatsManager.getAppStandbyBucket());
+    }
+}
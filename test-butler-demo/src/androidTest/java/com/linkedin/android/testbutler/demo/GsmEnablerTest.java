@@ -34,6 +34,7 @@ import static junit.framework.Assert.assertTrue;
 public class GsmEnablerTest {
     public static final int RETRY_COUNT = 10;
     public static final int PAUSE = 100;
+    public static final long WAIT_TIMEOUT = 10000;
     private ConnectivityManager connectivityManager;
 
     @Before
@@ -75,6 +76,23 @@ public class GsmEnablerTest {
         enableDataTransferAndCheck();
     }
 
+    @Test
+    public void disableAndEnableGsmDataTransmissionAndWait() {
+        //Action 1
+        TestButler.setGsmState(false, WAIT_TIMEOUT);
+
+        //Check 1, without polling since the state change already happened
+        NetworkInfo mobileNetworkInfo = connectivityManager.getNetworkInfo(ConnectivityManager.TYPE_MOBILE);
+        assertTrue("Data transfer was not disabled", mobileNetworkInfo == null || !mobileNetworkInfo.isConnected());
+
+        //Action 2
+        TestButler.setGsmState(true, WAIT_TIMEOUT);
+
+        //Check 2
+        mobileNetworkInfo = connectivityManager.getNetworkInfo(ConnectivityManager.TYPE_MOBILE);
+        assertTrue("Data transfer was not enabled", mobileNetworkInfo != null && mobileNetworkInfo.isConnected());
+    }
+
     private void disableDataTransferAndCheck() {
         boolean result = disableDataTransfer();
 
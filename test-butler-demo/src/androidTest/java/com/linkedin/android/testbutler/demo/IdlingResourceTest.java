@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler.demo;
+
+import android.view.Surface;
+
+import com.linkedin.android.testbutler.TestButler;
+import com.linkedin.android.testbutler.TestButlerIdlingResource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import androidx.test.espresso.IdlingRegistry;
+import androidx.test.rule.ActivityTestRule;
+
+import static androidx.test.espresso.Espresso.onView;
+import static androidx.test.espresso.assertion.ViewAssertions.matches;
+import static androidx.test.espresso.matcher.ViewMatchers.isDisplayed;
+import static androidx.test.espresso.matcher.ViewMatchers.withId;
+import static org.junit.Assert.assertEquals;
+
+public class IdlingResourceTest {
+
+    @Rule public ActivityTestRule<MainActivity> testRule = new ActivityTestRule<>(MainActivity.class);
+
+    private final TestButlerIdlingResource idlingResource = new TestButlerIdlingResource();
+
+    @Before
+    public void setup() {
+        IdlingRegistry.getInstance().register(idlingResource);
+    }
+
+    @After
+    public void teardown() {
+        TestButler.setRotation(Surface.ROTATION_0);
+        onView(withId(R.id.editText)).check(matches(isDisplayed()));
+        IdlingRegistry.getInstance().unregister(idlingResource);
+        idlingResource.unregister();
+    }
+
+    @Test
+    public void espressoWaitsForRotation() {
+        TestButler.setRotation(Surface.ROTATION_90);
+
+        // Espresso only gets past the idling resource once the display has rotated
+        onView(withId(R.id.editText)).check(matches(isDisplayed()));
+        assertEquals(Surface.ROTATION_90,
+                testRule.getActivity().getWindowManager().getDefaultDisplay().getRotation());
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler.demo;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.os.SystemClock;
+import android.provider.Settings;
+
+import com.linkedin.android.testbutler.SettingsNamespaces;
+import com.linkedin.android.testbutler.TestButler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PinnedSettingsTest {
+    // Settings.Secure.SPELL_CHECKER_ENABLED is hidden
+    private static final String SPELL_CHECKER_ENABLED = "spell_checker_enabled";
+    private static final long TIMEOUT_MS = 2000;
+
+    private ContentResolver contentResolver;
+
+    @Before
+    public void setup() {
+        Context context = ApplicationProvider.getApplicationContext();
+        contentResolver = context.getContentResolver();
+    }
+
+    @After
+    public void teardown() {
+        TestButler.unpinAllSettings(SettingsNamespaces.SECURE);
+        TestButler.setSpellCheckerState(false);
+    }
+
+    @Test
+    public void pinnedSettingIsWrittenBack() {
+        TestButler.pinSetting(SettingsNamespaces.SECURE, SPELL_CHECKER_ENABLED, "0");
+        assertEquals("0", Settings.Secure.getString(contentResolver, SPELL_CHECKER_ENABLED));
+
+        long correctionsBefore = TestButler.getStats().getLong("pinnedSettingCorrections");
+        TestButler.setSpellCheckerState(true);
+
+        assertTrue(TestButler.awaitSetting(SettingsNamespaces.SECURE, SPELL_CHECKER_ENABLED, "0", TIMEOUT_MS));
+        assertEquals("0", Settings.Secure.getString(contentResolver, SPELL_CHECKER_ENABLED));
+        assertTrue(TestButler.getStats().getLong("pinnedSettingCorrections") > correctionsBefore);
+    }
+
+    @Test
+    public void unpinnedSettingIsNotWrittenBack() {
+        TestButler.pinSetting(SettingsNamespaces.SECURE, SPELL_CHECKER_ENABLED, "0");
+        TestButler.unpinSettings(SettingsNamespaces.SECURE, SPELL_CHECKER_ENABLED);
+
+        TestButler.setSpellCheckerState(true);
+        SystemClock.sleep(500);
+        assertEquals("1", Settings.Secure.getString(contentResolver, SPELL_CHECKER_ENABLED));
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler.demo;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.IBinder;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.util.Log;
+
+import androidx.test.filters.SdkSuppress;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.linkedin.android.testbutler.ButlerApi;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Times the same call through ButlerService's binder and through the privileged binder which
+ * TestButler calls directly. On physical devices the first one is forwarded to ShellButlerService,
+ * on emulators both are the same binder.
+ * <p>
+ * The results are logged and reported as instrumentation status, e.g. with
+ * {@code adb shell am instrument -w -r -e class <this test> ...}.
+ */
+@SdkSuppress(minSdkVersion = Build.VERSION_CODES.KITKAT)
+public class PrivilegedApiLatencyTest {
+
+    private static final String TAG = PrivilegedApiLatencyTest.class.getSimpleName();
+    private static final int WARMUP_CALLS = 20;
+    private static final int TIMED_CALLS = 200;
+
+    private final CountDownLatch connected = new CountDownLatch(1);
+    private volatile IBinder butlerBinder;
+
+    private final ServiceConnection connection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            butlerBinder = service;
+            connected.countDown();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            butlerBinder = null;
+        }
+    };
+
+    private Context context;
+
+    @Before
+    public void setup() throws InterruptedException {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        Intent intent = new Intent();
+        intent.setComponent(new ComponentName("com.linkedin.android.testbutler",
+                "com.linkedin.android.testbutler.ButlerService"));
+        assertTrue(context.bindService(intent, connection, Context.BIND_AUTO_CREATE));
+        assertTrue(connected.await(15, TimeUnit.SECONDS));
+    }
+
+    @After
+    public void teardown() {
+        context.unbindService(connection);
+    }
+
+    @Test
+    public void privilegedApiLatency() throws Exception {
+        ButlerApi butlerApi = ButlerApi.Stub.asInterface(butlerBinder);
+        IBinder privilegedBinder = butlerApi.getPrivilegedApi();
+        assertNotNull(privilegedBinder);
+        ButlerApi privilegedApi = ButlerApi.Stub.asInterface(privilegedBinder);
+
+        // Setting the current mode again only measures the round trip, not an actual change
+        int locationMode = Settings.Secure.getInt(context.getContentResolver(), Settings.Secure.LOCATION_MODE);
+
+        long butlerApiMicros = averageCallMicros(butlerApi, locationMode);
+        long privilegedApiMicros = averageCallMicros(privilegedApi, locationMode);
+
+        Bundle results = new Bundle();
+        results.putLong("butlerApiSetLocationModeMicros", butlerApiMicros);
+        results.putLong("privilegedApiSetLocationModeMicros", privilegedApiMicros);
+        Log.i(TAG, "setLocationMode: " + butlerApiMicros + "us through ButlerService, "
+                + privilegedApiMicros + "us through the privileged binder");
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+    }
+
+    private static long averageCallMicros(ButlerApi api, int locationMode) throws RemoteException {
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            api.setLocationMode(locationMode);
+        }
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < TIMED_CALLS; i++) {
+            api.setLocationMode(locationMode);
+        }
+        return (SystemClock.elapsedRealtimeNanos() - start) / TIMED_CALLS / 1000;
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler.demo;
+
+import android.content.Context;
+import android.view.Display;
+import android.view.Surface;
+import android.view.WindowManager;
+
+import com.linkedin.android.testbutler.TestButler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import static org.junit.Assert.assertEquals;
+
+public class RotationChangerTest {
+    private static final long TIMEOUT_MS = 5000;
+
+    private Display display;
+
+    @Before
+    public void setup() {
+        Context context = ApplicationProvider.getApplicationContext();
+        WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        display = windowManager.getDefaultDisplay();
+    }
+
+    @After
+    public void teardown() {
+        TestButler.setRotation(Surface.ROTATION_0, TIMEOUT_MS);
+    }
+
+    @Test
+    public void displayIsRotatedWhenSetRotationReturns() {
+        TestButler.setRotation(Surface.ROTATION_90, TIMEOUT_MS);
+        assertEquals(Surface.ROTATION_90, display.getRotation());
+
+        TestButler.setRotation(Surface.ROTATION_0, TIMEOUT_MS);
+        assertEquals(Surface.ROTATION_0, display.getRotation());
+    }
+}
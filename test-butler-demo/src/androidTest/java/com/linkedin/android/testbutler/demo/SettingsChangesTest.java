@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler.demo;
+
+import android.os.Build;
+import android.provider.Settings;
+
+import com.linkedin.android.testbutler.SettingsNamespaces;
+import com.linkedin.android.testbutler.TestButler;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Map;
+
+import androidx.test.filters.SdkSuppress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+@SdkSuppress(minSdkVersion = Build.VERSION_CODES.O)
+public class SettingsChangesTest {
+
+    @After
+    public void teardown() {
+        TestButler.setAlwaysFinishActivities(false);
+    }
+
+    @Test
+    public void changedSettingIsReported() {
+        TestButler.setAlwaysFinishActivities(true);
+
+        Map<String, String[]> changes = TestButler.getSettingsChangesSinceStart(SettingsNamespaces.GLOBAL);
+        String[] change = changes.get(Settings.Global.ALWAYS_FINISH_ACTIVITIES);
+        assertNotNull(change);
+        assertEquals("1", change[1]);
+    }
+
+    @Test
+    public void restoredSettingIsNotReported() {
+        TestButler.setAlwaysFinishActivities(true);
+        TestButler.setAlwaysFinishActivities(false);
+
+        Map<String, String[]> changes = TestButler.getSettingsChangesSinceStart(SettingsNamespaces.GLOBAL);
+        assertFalse(changes.containsKey(Settings.Global.ALWAYS_FINISH_ACTIVITIES));
+    }
+}
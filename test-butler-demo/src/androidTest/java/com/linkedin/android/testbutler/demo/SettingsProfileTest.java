@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler.demo;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.os.Build;
+import android.provider.Settings;
+
+import com.linkedin.android.testbutler.SettingsNamespaces;
+import com.linkedin.android.testbutler.SettingsProfiles;
+import com.linkedin.android.testbutler.TestButler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.filters.SdkSuppress;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@SdkSuppress(minSdkVersion = Build.VERSION_CODES.JELLY_BEAN_MR1)
+public class SettingsProfileTest {
+    // Settings.Global.PACKAGE_VERIFIER_ENABLE is hidden
+    private static final String PACKAGE_VERIFIER_ENABLE = "package_verifier_enable";
+    // Settings.Global.HEADS_UP_NOTIFICATIONS_ENABLED is hidden
+    private static final String HEADS_UP_NOTIFICATIONS_ENABLED = "heads_up_notifications_enabled";
+    private static final long TIMEOUT_MS = 5000;
+
+    private ContentResolver contentResolver;
+
+    @Before
+    public void setup() {
+        Context context = ApplicationProvider.getApplicationContext();
+        contentResolver = context.getContentResolver();
+    }
+
+    @Test
+    public void installAccelerationDisablesPackageVerification() {
+        TestButler.applySettingsProfile(SettingsProfiles.INSTALL_ACCELERATION);
+
+        assertEquals("0", Settings.Global.getString(contentResolver, PACKAGE_VERIFIER_ENABLE));
+    }
+
+    @Test
+    public void quietDeviceDisablesFeedbackAndHeadsUp() {
+        TestButler.applySettingsProfile(SettingsProfiles.QUIET_DEVICE);
+
+        assertEquals("0", Settings.System.getString(contentResolver, Settings.System.HAPTIC_FEEDBACK_ENABLED));
+        assertEquals("0", Settings.System.getString(contentResolver, Settings.System.SOUND_EFFECTS_ENABLED));
+        assertEquals("0", Settings.Global.getString(contentResolver, HEADS_UP_NOTIFICATIONS_ENABLED));
+    }
+
+    @Test
+    public void settingWrittenAfterProfileIsRestoredToOriginalValue() {
+        String original = Settings.Global.getString(contentResolver, PACKAGE_VERIFIER_ENABLE);
+
+        TestButler.applySettingsProfile(SettingsProfiles.INSTALL_ACCELERATION);
+        TestButler.putSettings(SettingsNamespaces.GLOBAL,
+                Collections.singletonMap(PACKAGE_VERIFIER_ENABLE, "1"));
+        assertEquals("1", Settings.Global.getString(contentResolver, PACKAGE_VERIFIER_ENABLE));
+
+        // Restart the service, so it restores everything the test changed
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        TestButler.teardown(context);
+        TestButler.setup(context);
+
+        // On physical devices the previous ShellButlerService restores settings asynchronously
+        assertTrue(TestButler.awaitSetting(SettingsNamespaces.GLOBAL, PACKAGE_VERIFIER_ENABLE,
+                original, TIMEOUT_MS));
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler.demo;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Build;
+
+import com.linkedin.android.testbutler.TestButler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Locale;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.filters.SdkSuppress;
+
+import static org.junit.Assert.assertEquals;
+
+@SdkSuppress(minSdkVersion = Build.VERSION_CODES.N)
+public class SystemLocaleTest {
+    private static final long TIMEOUT_MS = 5000;
+
+    private Context context;
+    private Locale originalLocale;
+
+    @Before
+    public void setup() {
+        context = ApplicationProvider.getApplicationContext();
+        originalLocale = getLocale();
+    }
+
+    @After
+    public void teardown() {
+        TestButler.setSystemLocale(originalLocale.getLanguage(), originalLocale.getCountry(), TIMEOUT_MS);
+    }
+
+    @Test
+    public void systemLocaleIsAppliedWhenSetSystemLocaleReturns() {
+        TestButler.setSystemLocale("fr", "FR", TIMEOUT_MS);
+        assertEquals(new Locale("fr", "FR"), getLocale());
+    }
+
+    private Locale getLocale() {
+        Configuration configuration = context.getResources().getConfiguration();
+        return configuration.getLocales().get(0);
+    }
+}
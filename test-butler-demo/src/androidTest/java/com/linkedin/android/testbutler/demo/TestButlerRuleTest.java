@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler.demo;
+
+import android.content.ContentResolver;
+import android.provider.Settings;
+import android.view.Surface;
+
+import com.linkedin.android.testbutler.DeviceConfig;
+import com.linkedin.android.testbutler.TestButlerRule;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import static org.junit.Assert.assertEquals;
+
+@DeviceConfig(rotation = Surface.ROTATION_90)
+public class TestButlerRuleTest {
+
+    @Rule
+    public TestButlerRule testButlerRule = new TestButlerRule();
+
+    @Test
+    @DeviceConfig(alwaysFinishActivities = true)
+    public void appliesClassAndMethodConfig() throws Exception {
+        ContentResolver contentResolver = ApplicationProvider.getApplicationContext().getContentResolver();
+        assertEquals(1, Settings.Global.getInt(contentResolver, Settings.Global.ALWAYS_FINISH_ACTIVITIES));
+        assertEquals(Surface.ROTATION_90, Settings.System.getInt(contentResolver, Settings.System.USER_ROTATION));
+    }
+
+    @Test
+    @DeviceConfig(rotation = Surface.ROTATION_180)
+    public void methodConfigOverridesClassConfig() throws Exception {
+        ContentResolver contentResolver = ApplicationProvider.getApplicationContext().getContentResolver();
+        assertEquals(Surface.ROTATION_180, Settings.System.getInt(contentResolver, Settings.System.USER_ROTATION));
+    }
+}
@@ -21,6 +21,7 @@ import android.content.Context;
 import android.os.Build;
 import android.provider.Settings;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import static junit.framework.Assert.assertTrue;
 import static junit.framework.Assert.fail;
@@ -43,6 +44,16 @@ class AnimationAssertions {
         }
     }
 
+    static void verifyAnimationScalesDisabled(@Nullable float[] scales) {
+        if (scales == null) {
+            fail("Could not check current status of animation scales");
+            return;
+        }
+        for (float scale : scales) {
+            assertTrue(isZero(scale));
+        }
+    }
+
     private static boolean isZero(float value) {
         return Float.compare(Math.abs(value), 0.0f) == 0;
     }
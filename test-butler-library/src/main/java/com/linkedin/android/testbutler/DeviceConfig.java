@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the device configuration a test (or every test in a class) should run with. Must be
+ * used together with {@link TestButlerRule}.
+ * <p>
+ * Only the attributes which are set are applied; everything else is left as is. Boolean attributes
+ * are declared as arrays so they can be left unset, but are written like plain booleans:
+ * <pre>
+ * {@literal @}DeviceConfig(wifi = false, rotation = Surface.ROTATION_90, locationMode = Settings.Secure.LOCATION_MODE_OFF)
+ * </pre>
+ * When both the test class and the test method are annotated, attributes set on the method take
+ * precedence.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface DeviceConfig {
+
+    /**
+     * Value of {@link #rotation()} and {@link #locationMode()} which leaves the setting unchanged
+     */
+    int UNCHANGED = -1;
+
+    /**
+     * @see TestButler#setWifiState(boolean)
+     */
+    boolean[] wifi() default {};
+
+    /**
+     * @see TestButler#setGsmState(boolean)
+     */
+    boolean[] gsm() default {};
+
+    /**
+     * One of the {@link TestButler.Rotation} IntDef values
+     *
+     * @see TestButler#setRotation(int)
+     */
+    int rotation() default UNCHANGED;
+
+    /**
+     * One of the {@link TestButler.LocationMode} IntDef values
+     *
+     * @see TestButler#setLocationMode(int)
+     */
+    int locationMode() default UNCHANGED;
+
+    /**
+     * @see TestButler#setAlwaysFinishActivities(boolean)
+     */
+    boolean[] alwaysFinishActivities() default {};
+
+    /**
+     * @see TestButler#setSpellCheckerState(boolean)
+     */
+    boolean[] spellChecker() default {};
+
+    /**
+     * @see TestButler#setShowImeWithHardKeyboardState(boolean)
+     */
+    boolean[] showImeWithHardKeyboard() default {};
+
+    /**
+     * @see TestButler#setImmersiveModeConfirmation(boolean)
+     */
+    boolean[] immersiveModeConfirmation() default {};
+}
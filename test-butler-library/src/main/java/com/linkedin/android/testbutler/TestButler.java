@@ -32,12 +32,18 @@ import android.os.RemoteException;
 import android.provider.Settings;
 import androidx.annotation.IntDef;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import android.util.Log;
 import android.view.Surface;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -77,18 +83,39 @@ public class TestButler {
     private static final ServiceConnection serviceConnection = new ServiceConnection() {
         @Override
         public void onServiceConnected(ComponentName name, IBinder service) {
-            butlerApi = ButlerApi.Stub.asInterface(service);
+            synchronized (idleCallbacks) {
+                butlerApi = ButlerApi.Stub.asInterface(service);
+                privilegedApi = getPrivilegedApi(butlerApi);
+                // Callbacks registered before setup, or with a service which has since died
+                for (ButlerIdleCallback callback : idleCallbacks) {
+                    registerIdleCallbackInternal(callback);
+                }
+            }
             serviceStarted.countDown();
         }
 
         @Override
         public void onServiceDisconnected(ComponentName name) {
             butlerApi = null;
+            privilegedApi = null;
         }
     };
 
     private static ButlerApi butlerApi;
 
+    /**
+     * The binder which actually implements the privileged operations, used for every operation which
+     * doesn't need the Test Butler app itself (e.g. to wait for a change using a Context, or to change
+     * wifi before 8.1, which also applies to checkpoints and device configs). On physical
+     * devices this skips forwarding through the app, saving a binder transaction per call.
+     */
+    private static ButlerApi privilegedApi;
+
+    /**
+     * Idle callbacks to register with the service whenever it (re)connects
+     */
+    private static final Set<ButlerIdleCallback> idleCallbacks = new LinkedHashSet<>();
+
     /**
      * Start the remote ButlerService to prepare for running tests
      * <p>
@@ -146,11 +173,76 @@ public class TestButler {
      * by the {@link #setup(Context)} method. This is useful if you want to immediately halt test execution if
      * animations could not be disabled by Test Butler, rather than failing gracefully and continuing
      * to try and run your tests.
+     * <p>
+     * When the Test Butler service is running, the animation scales are read from the window manager in a
+     * single call, and animations are disabled again first if something on the device re-enabled them.
      *
      * @param context the "target context"; i.e. Context of the app under test (not the test apk context!)
      */
     public static void verifyAnimationsDisabled(@NonNull Context context) {
-        AnimationAssertions.verifyAnimationsDisabled(context);
+        if (butlerApi == null) {
+            AnimationAssertions.verifyAnimationsDisabled(context);
+            return;
+        }
+        try {
+            AnimationAssertions.verifyAnimationScalesDisabled(privilegedApi.ensureAnimationsDisabled());
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+    }
+
+    /**
+     * Enable or disable the animation scale watchdog.
+     * <p>
+     * While enabled, the Test Butler service watches the animation scale settings and disables animations again
+     * as soon as anything on the device (e.g. a system app on some OEM devices) re-enables them, instead of
+     * letting Espresso time out. Each correction is counted in {@link #getStats()}.
+     *
+     * @param enabled true to start the watchdog, false to stop it
+     */
+    public static void setAnimationWatchdogState(boolean enabled) {
+        verifyApiReady();
+        try {
+            if (!privilegedApi.setAnimationWatchdogState(enabled)) {
+                throw new IllegalStateException("Failed to set animation watchdog state!");
+            }
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+    }
+
+    /**
+     * Get counters describing the work done by the Test Butler service during this run, such as how many times
+     * animations had to be disabled again. Useful for reporting device health from CI.
+     *
+     * @return a Bundle mapping counter names to long values
+     */
+    @NonNull
+    public static Bundle getStats() {
+        verifyApiReady();
+        try {
+            return privilegedApi.getStats();
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+    }
+
+    /**
+     * Get a breakdown of how long each startup phase of the Test Butler service took on this device, such as
+     * finding the device over ADB or capturing the original device state. Useful for charting startup time per
+     * device model from CI. The same phases appear as "TestButler:&lt;phase&gt;" sections in Perfetto/systrace.
+     *
+     * @return a Bundle mapping phase names to durations in milliseconds
+     */
+    @NonNull
+    public static Bundle getStartupTimings() {
+        verifyApiReady();
+        try {
+            // Ask ButlerService itself, which adds its own phases on physical devices
+            return butlerApi.getStartupTimings();
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
     }
 
     /**
@@ -169,6 +261,25 @@ public class TestButler {
         }
     }
 
+    /**
+     * Enable/disable the Wifi connection on the emulator, and wait until wifi is actually connected to a
+     * network (when enabling) or turned off (when disabling). The Test Butler service listens for the
+     * connectivity change, so this returns as soon as it happens.
+     *
+     * @param enabled   true if wifi should be enabled, false otherwise
+     * @param timeoutMs the maximum time to wait for the connectivity change, in milliseconds
+     */
+    public static void setWifiState(boolean enabled, long timeoutMs) {
+        verifyApiReady();
+        try {
+            if (!butlerApi.setWifiStateAndWait(enabled, timeoutMs)) {
+                throw new IllegalStateException("Failed to set wifi state or wait for connectivity!");
+            }
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+    }
+
     /**
      * Enable/disable the GSM connection on the emulator
      *
@@ -186,6 +297,25 @@ public class TestButler {
         }
     }
 
+    /**
+     * Enable/disable the GSM connection on the emulator, and wait until mobile data is actually connected
+     * (when enabling) or disconnected (when disabling). The Test Butler service listens for the connectivity
+     * change, so this returns as soon as it happens.
+     *
+     * @param enabled   true if GSM should be enabled, false otherwise
+     * @param timeoutMs the maximum time to wait for the connectivity change, in milliseconds
+     */
+    public static void setGsmState(boolean enabled, long timeoutMs) {
+        verifyApiReady();
+        try {
+            if (!butlerApi.setGsmStateAndWait(enabled, timeoutMs)) {
+                throw new IllegalStateException("Failed to set GSM state or wait for connectivity!");
+            }
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+    }
+
     /**
      * Change the location services mode on the emulator
      *
@@ -194,7 +324,7 @@ public class TestButler {
     public static void setLocationMode(@LocationMode int locationMode) {
         verifyApiReady();
         try {
-            if (!butlerApi.setLocationMode(locationMode)) {
+            if (!privilegedApi.setLocationMode(locationMode)) {
                 throw new IllegalStateException("Failed to set location mode!");
             }
         } catch (RemoteException e) {
@@ -228,6 +358,174 @@ public class TestButler {
         resources.updateConfiguration(configuration, resources.getDisplayMetrics());
     }
 
+    /**
+     * Change the locale of the whole device, and wait until the resulting configuration change has
+     * been delivered. Unlike {@link #setLocale(String, String, Context)}, this affects every app and
+     * survives the app under test updating its own configuration. The original locale is restored
+     * when Test Butler shuts down.
+     *
+     * @param language  the language code for the new locale, as expected by {@link Locale#Locale(String, String)}
+     * @param country   the country code for the new locale, as expected by {@link Locale#Locale(String, String)}
+     * @param timeoutMs the maximum time to wait for the configuration change, in milliseconds
+     */
+    public static void setSystemLocale(@NonNull String language, @NonNull String country, long timeoutMs) {
+        verifyApiReady();
+        try {
+            if (!butlerApi.setSystemLocale(language, country, timeoutMs)) {
+                throw new IllegalStateException("Failed to set the system locale or wait for it to be applied!");
+            }
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+    }
+
+    /**
+     * Enable or disable Doze on the device. Disabling Doze for a run prevents the device from deferring
+     * jobs and alarms partway through it. Doze is enabled again when Test Butler shuts down.
+     *
+     * @param enabled whether the device should be allowed to doze
+     */
+    public static void setDozeEnabled(boolean enabled) {
+        verifyApiReady();
+        try {
+            if (!privilegedApi.setDozeEnabled(enabled)) {
+                throw new IllegalStateException("Failed to change Doze state!");
+            }
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+    }
+
+    /**
+     * Force the device into Doze, regardless of its motion and screen state, to test behavior while
+     * the device is dozing. Requires API 23+.
+     *
+     * @param idle true to force the device into Doze, false to let it leave Doze again
+     */
+    @TargetApi(Build.VERSION_CODES.M)
+    public static void setForceIdle(boolean idle) {
+        verifyApiReady();
+        try {
+            if (!privilegedApi.setForceIdle(idle)) {
+                throw new IllegalStateException("Failed to force the device idle state!");
+            }
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+    }
+
+    /**
+     * Set the app standby bucket of the given package, e.g. to keep the app under test in
+     * {@link android.app.usage.UsageStatsManager#STANDBY_BUCKET_ACTIVE} for the whole run. The
+     * original bucket is restored when Test Butler shuts down. Requires API 28+.
+     *
+     * @param packageName the package to change
+     * @param bucket      one of the UsageStatsManager.STANDBY_BUCKET_* constants
+     */
+    @TargetApi(Build.VERSION_CODES.P)
+    public static void setAppStandbyBucket(@NonNull String packageName, int bucket) {
+        verifyApiReady();
+        try {
+            if (!privilegedApi.setAppStandbyBucket(packageName, bucket)) {
+                throw new IllegalStateException("Failed to set the app standby bucket!");
+            }
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+    }
+
+    /**
+     * Clear the data of the given package, like "adb shell pm clear", but in a single call from the
+     * test process. This kills the package's processes, so it must not be used on the package whose
+     * instrumentation is running the tests (use the test orchestrator's clearPackageData for that).
+     *
+     * @param packageName the package whose data should be cleared
+     */
+    public static void clearApplicationData(@NonNull String packageName) {
+        verifyApiReady();
+        try {
+            if (!privilegedApi.clearApplicationData(packageName)) {
+                throw new IllegalStateException("Failed to clear data of " + packageName);
+            }
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+    }
+
+    /**
+     * Force stop the given package, like "adb shell am force-stop". The same caveat as for
+     * {@link #clearApplicationData(String)} applies.
+     *
+     * @param packageName the package to stop
+     */
+    public static void forceStopPackage(@NonNull String packageName) {
+        verifyApiReady();
+        try {
+            if (!privilegedApi.forceStopPackage(packageName)) {
+                throw new IllegalStateException("Failed to force stop " + packageName);
+            }
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+    }
+
+    /**
+     * Compile the given package ahead of time, blocking until compilation finishes, so that early tests
+     * don't run interpreted or while the JIT is still warming up. Best called once before the suite
+     * starts, e.g. from the test runner. Requires API 24+.
+     *
+     * @param packageName    the package to compile, typically the app under test
+     * @param compilerFilter an ART compiler filter, e.g. "speed" or "speed-profile"
+     * @return how long compilation took, in milliseconds
+     */
+    @TargetApi(Build.VERSION_CODES.N)
+    public static long compilePackage(@NonNull String packageName, @NonNull String compilerFilter) {
+        verifyApiReady();
+        try {
+            long elapsedMs = privilegedApi.compilePackage(packageName, compilerFilter);
+            if (elapsedMs < 0) {
+                throw new IllegalStateException("Failed to compile " + packageName);
+            }
+            return elapsedMs;
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+    }
+
+    /**
+     * Set any number of app op modes for a package in a single call, for special access that runtime
+     * permissions don't cover, such as drawing overlays or usage stats access. This is much faster than
+     * running {@code adb shell appops set} from the host for each op.
+     * <p>
+     * The original modes are restored when the Test Butler service is stopped.
+     *
+     * @param packageName the package whose app ops should be changed
+     * @param modes       {@link android.app.AppOpsManager} MODE_* values keyed by op name, either as used by
+     *                    {@code appops set} (e.g. "SYSTEM_ALERT_WINDOW") or as in the AppOpsManager OPSTR_*
+     *                    constants (e.g. "android:system_alert_window")
+     */
+    public static void setAppOpModes(@NonNull String packageName, @NonNull Map<String, Integer> modes) {
+        Bundle bundle = new Bundle();
+        for (Map.Entry<String, Integer> mode : modes.entrySet()) {
+            bundle.putInt(mode.getKey(), mode.getValue());
+        }
+        verifyApiReady();
+        try {
+            if (!privilegedApi.setAppOpModes(packageName, bundle)) {
+                throw new IllegalStateException("Failed to set app op modes!");
+            }
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+    }
+
+    /**
+     * Set a single app op mode for a package, see {@link #setAppOpModes(String, Map)}
+     */
+    public static void setAppOpMode(@NonNull String packageName, @NonNull String op, int mode) {
+        setAppOpModes(packageName, Collections.singletonMap(op, mode));
+    }
+
     /**
      * Change the screen rotation of the emulator
      *
@@ -244,6 +542,25 @@ public class TestButler {
         }
     }
 
+    /**
+     * Rotate the screen of the emulator, and wait until the display has actually rotated and the resulting
+     * configuration change has been delivered. Use this instead of sleeping after {@link #setRotation(int)},
+     * e.g. before taking screenshots.
+     *
+     * @param rotation  one of the {@link Rotation} IntDef values
+     * @param timeoutMs the maximum time to wait for the rotation, in milliseconds
+     */
+    public static void setRotation(@Rotation int rotation, long timeoutMs) {
+        verifyApiReady();
+        try {
+            if (!butlerApi.setRotationAndWait(rotation, timeoutMs)) {
+                throw new IllegalStateException("Failed to set rotation or wait for the display to rotate!");
+            }
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+    }
+
     /**
      * Enable or disable the system spell checker
      *
@@ -251,7 +568,7 @@ public class TestButler {
      */
     public static void setSpellCheckerState(boolean enabled) {
         try {
-            if (!butlerApi.setSpellCheckerState(enabled)) {
+            if (!privilegedApi.setSpellCheckerState(enabled)) {
                 throw new IllegalStateException("Failed to set spell checker!");
             }
         } catch (RemoteException e) {
@@ -269,7 +586,7 @@ public class TestButler {
      */
     public static void setShowImeWithHardKeyboardState(boolean enabled) {
         try {
-            if (!butlerApi.setShowImeWithHardKeyboardState(enabled)) {
+            if (!privilegedApi.setShowImeWithHardKeyboardState(enabled)) {
                 throw new IllegalStateException("Failed to set software keyboard!");
             }
         } catch (RemoteException e) {
@@ -296,7 +613,7 @@ public class TestButler {
         }
         verifyApiReady();
         try {
-            if (!butlerApi.grantPermission(context.getPackageName(), permission)) {
+            if (!privilegedApi.grantPermission(context.getPackageName(), permission)) {
                 throw new IllegalArgumentException("Failed to grant permission " + permission);
             }
         } catch (RemoteException e) {
@@ -311,7 +628,7 @@ public class TestButler {
      */
     public static void setImmersiveModeConfirmation(boolean enabled) {
         try {
-            if (!butlerApi.setImmersiveModeConfirmation(enabled)) {
+            if (!privilegedApi.setImmersiveModeConfirmation(enabled)) {
                 throw new IllegalStateException("Failed to set immersive mode confirmation!");
             }
         } catch (RemoteException e) {
@@ -327,7 +644,7 @@ public class TestButler {
     public static void setAlwaysFinishActivities(boolean enabled) {
         verifyApiReady();
         try {
-            if (!butlerApi.setAlwaysFinishActivitiesState(enabled)) {
+            if (!privilegedApi.setAlwaysFinishActivitiesState(enabled)) {
                 throw new IllegalStateException("Failed to set always finish activities!");
             }
         } catch (RemoteException e) {
@@ -351,6 +668,312 @@ public class TestButler {
         }
     }
 
+    /**
+     * Start tracking which device settings are changed through Test Butler, so they can later be
+     * restored with {@link #resetToCheckpoint()}.
+     * <p>
+     * This is typically called once before the first test (or at the start of each test), instead
+     * of defensively resetting every setting in every {@code @Before} method.
+     */
+    public static void checkpoint() {
+        verifyApiReady();
+        try {
+            if (!butlerApi.checkpoint()) {
+                throw new IllegalStateException("Failed to create checkpoint!");
+            }
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+    }
+
+    /**
+     * Restore the settings changed through Test Butler since the last {@link #checkpoint()} call
+     * (rotation, location mode, wifi, always finish activities, etc.) to the values they had at
+     * that time.
+     * <p>
+     * Only the settings that were actually changed are touched, and all of them are restored in a
+     * single call to the Test Butler service.
+     */
+    public static void resetToCheckpoint() {
+        verifyApiReady();
+        try {
+            if (!butlerApi.resetToCheckpoint()) {
+                throw new IllegalStateException("Failed to reset to checkpoint!");
+            }
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+    }
+
+    /**
+     * Set the given settings and keep them at these values until they are unpinned or the Test Butler
+     * service stops, writing them back whenever something else on the device changes them (e.g. a
+     * system app flipping {@code accelerometer_rotation} or the spell checker back on).
+     * <p>
+     * The original values are restored when the Test Butler service is stopped.
+     *
+     * @param namespace The namespace of the settings, one of {@link SettingsNamespaces}
+     * @param values    The values to pin, keyed by setting name
+     */
+    public static void pinSettings(@NonNull String namespace, @NonNull Map<String, String> values) {
+        Bundle bundle = new Bundle();
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            bundle.putString(value.getKey(), value.getValue());
+        }
+        verifyApiReady();
+        try {
+            if (!privilegedApi.pinSettings(namespace, bundle)) {
+                throw new IllegalStateException("Failed to pin settings!");
+            }
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+    }
+
+    /**
+     * Pin a single setting, see {@link #pinSettings(String, Map)}
+     *
+     * @param namespace The namespace of the setting, one of {@link SettingsNamespaces}
+     * @param key       The name of the setting
+     * @param value     The value to keep the setting at
+     */
+    public static void pinSetting(@NonNull String namespace, @NonNull String key, @NonNull String value) {
+        pinSettings(namespace, Collections.singletonMap(key, value));
+    }
+
+    /**
+     * Stop keeping the given settings at their pinned values. Their current values are left as they
+     * are until the Test Butler service is stopped.
+     *
+     * @param namespace The namespace of the settings, one of {@link SettingsNamespaces}
+     * @param keys      The names of the settings to unpin
+     */
+    public static void unpinSettings(@NonNull String namespace, @NonNull String... keys) {
+        unpinSettingsInternal(namespace, keys);
+    }
+
+    /**
+     * Stop keeping any setting in the given namespace at its pinned value
+     *
+     * @param namespace The namespace of the settings, one of {@link SettingsNamespaces}
+     */
+    public static void unpinAllSettings(@NonNull String namespace) {
+        unpinSettingsInternal(namespace, null);
+    }
+
+    private static void unpinSettingsInternal(@NonNull String namespace, String[] keys) {
+        verifyApiReady();
+        try {
+            if (!privilegedApi.unpinSettings(namespace, keys)) {
+                throw new IllegalStateException("Failed to unpin settings!");
+            }
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+    }
+
+    /**
+     * Apply a curated batch of settings in a single call, e.g. {@link SettingsProfiles#INSTALL_ACCELERATION}
+     * to skip package verification for APKs installed during the run.
+     * <p>
+     * The original values are restored when the Test Butler service is stopped, or when it next starts
+     * if it crashed.
+     *
+     * @param profile One of the {@link SettingsProfiles}
+     */
+    public static void applySettingsProfile(@NonNull String profile) {
+        verifyApiReady();
+        try {
+            if (!privilegedApi.applySettingsProfile(profile)) {
+                throw new IllegalStateException("Failed to apply settings profile " + profile);
+            }
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+    }
+
+    /**
+     * Write any number of settings in a single call, e.g. settings Test Butler has no dedicated method for.
+     * This is much faster than running {@code adb shell settings put} from the host for each setting.
+     * <p>
+     * The original values are restored when the Test Butler service is stopped.
+     *
+     * @param namespace The namespace of the settings, one of {@link SettingsNamespaces}
+     * @param values    The values to write, keyed by setting name
+     */
+    public static void putSettings(@NonNull String namespace, @NonNull Map<String, String> values) {
+        Bundle bundle = new Bundle();
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            bundle.putString(value.getKey(), value.getValue());
+        }
+        verifyApiReady();
+        try {
+            if (!privilegedApi.putSettings(namespace, bundle)) {
+                throw new IllegalStateException("Failed to put settings!");
+            }
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+    }
+
+    /**
+     * Read any number of settings in a single call
+     *
+     * @param namespace The namespace of the settings, one of {@link SettingsNamespaces}
+     * @param keys      The names of the settings to read
+     * @return the values of the settings keyed by setting name; settings which don't exist are mapped to null
+     */
+    @NonNull
+    public static Map<String, String> getSettings(@NonNull String namespace, @NonNull String... keys) {
+        verifyApiReady();
+        Bundle bundle;
+        try {
+            bundle = privilegedApi.getSettings(namespace, keys);
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+        if (bundle == null) {
+            throw new IllegalStateException("Failed to get settings!");
+        }
+        Map<String, String> values = new HashMap<>();
+        for (String key : bundle.keySet()) {
+            values.put(key, bundle.getString(key));
+        }
+        return values;
+    }
+
+    /**
+     * Find the settings which were added, removed or changed since the Test Butler service started, e.g.
+     * to detect tests which leak settings changes. The whole namespace is read in a single provider query.
+     * <p>
+     * Requires Android 8.0+ on physical devices.
+     *
+     * @param namespace The namespace to compare, one of {@link SettingsNamespaces}
+     * @return a map from the name of each changed setting to a two element array holding its value when
+     * the service started and its current value (null where the setting did not exist)
+     */
+    @NonNull
+    public static Map<String, String[]> getSettingsChangesSinceStart(@NonNull String namespace) {
+        verifyApiReady();
+        Bundle bundle;
+        try {
+            bundle = privilegedApi.getSettingsChangesSinceStart(namespace);
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+        if (bundle == null) {
+            throw new IllegalStateException("Failed to get settings changes!");
+        }
+        Map<String, String[]> changes = new HashMap<>();
+        for (String key : bundle.keySet()) {
+            changes.put(key, bundle.getStringArray(key));
+        }
+        return changes;
+    }
+
+    /**
+     * Wait until a setting has the expected value. The Test Butler service watches the setting and returns as
+     * soon as it changes to the expected value, so there is no need to poll it from the test.
+     *
+     * @param namespace     The namespace of the setting, one of {@link SettingsNamespaces}
+     * @param key           The name of the setting
+     * @param expectedValue The value to wait for, or null to wait for the setting to be removed
+     * @param timeoutMs     The maximum time to wait, in milliseconds
+     * @return true if the setting had the expected value before the timeout, false otherwise
+     */
+    public static boolean awaitSetting(@NonNull String namespace, @NonNull String key,
+                                       @Nullable String expectedValue, long timeoutMs) {
+        verifyApiReady();
+        try {
+            return privilegedApi.awaitSetting(namespace, key, expectedValue, timeoutMs);
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+    }
+
+    /**
+     * Take a checkpoint, then apply the given configuration (see {@link DeviceConfigKeys}), changing
+     * only the settings which differ from the current device state. Used by {@link TestButlerRule}.
+     */
+    static void applyDeviceConfig(@NonNull Bundle config) {
+        verifyApiReady();
+        try {
+            if (!butlerApi.applyDeviceConfig(config, true)) {
+                throw new IllegalStateException("Failed to apply device config!");
+            }
+        } catch (RemoteException e) {
+            throw new IllegalStateException("Failed to communicate with ButlerService", e);
+        }
+    }
+
+    /**
+     * @return true if no device state change requested through Test Butler is still propagating, or if the
+     * service is not running. Used by {@link TestButlerIdlingResource}.
+     */
+    static boolean isIdle() {
+        if (butlerApi == null) {
+            return true;
+        }
+        try {
+            return butlerApi.isIdle();
+        } catch (RemoteException e) {
+            Log.e(TAG, "Failed to communicate with ButlerService", e);
+            return true;
+        }
+    }
+
+    /**
+     * Register a callback to be notified when the service becomes idle. Used by {@link TestButlerIdlingResource}.
+     * <p>
+     * If the service is not connected yet, the callback is registered once {@link #setup(Context)} connects to it.
+     */
+    static void registerIdleCallback(@NonNull ButlerIdleCallback callback) {
+        synchronized (idleCallbacks) {
+            if (idleCallbacks.add(callback) && butlerApi != null) {
+                registerIdleCallbackInternal(callback);
+            }
+        }
+    }
+
+    /**
+     * Stop notifying a callback passed to {@link #registerIdleCallback(ButlerIdleCallback)}
+     */
+    static void unregisterIdleCallback(@NonNull ButlerIdleCallback callback) {
+        synchronized (idleCallbacks) {
+            if (!idleCallbacks.remove(callback) || butlerApi == null) {
+                return;
+            }
+            try {
+                butlerApi.unregisterIdleCallback(callback);
+            } catch (RemoteException e) {
+                Log.e(TAG, "Failed to communicate with ButlerService", e);
+            }
+        }
+    }
+
+    private static void registerIdleCallbackInternal(@NonNull ButlerIdleCallback callback) {
+        try {
+            butlerApi.registerIdleCallback(callback);
+        } catch (RemoteException e) {
+            // Also called from onServiceConnected, so don't throw; the idling resource still polls isIdle
+            Log.e(TAG, "Failed to communicate with ButlerService", e);
+        }
+    }
+
+    @NonNull
+    private static ButlerApi getPrivilegedApi(@NonNull ButlerApi api) {
+        try {
+            IBinder binder = api.getPrivilegedApi();
+            // Older Test Butler apps don't implement getPrivilegedApi, and return null
+            if (binder != null) {
+                return ButlerApi.Stub.asInterface(binder);
+            }
+        } catch (RemoteException e) {
+            Log.w(TAG, "Failed to get the privileged ButlerApi, calling ButlerService instead", e);
+        }
+        return api;
+    }
+
     private static void verifyApiReady() {
         if (butlerApi == null) {
             throw new IllegalStateException("ButlerService is not started!");
@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import androidx.test.espresso.IdlingResource;
+
+/**
+ * An Espresso {@link IdlingResource} which is busy while a device state change requested through
+ * {@link TestButler} is still propagating, such as a connectivity transition after
+ * {@link TestButler#setWifiState(boolean)} or a display rotation after {@link TestButler#setRotation(int)}.
+ * <p>
+ * The Test Butler service calls back as soon as the last change has settled, so Espresso waits exactly
+ * as long as needed. It can be registered before or after {@link TestButler#setup(android.content.Context)},
+ * and should be unregistered from the service as well once it is unregistered from Espresso:
+ * <pre>
+ * IdlingRegistry.getInstance().register(idlingResource);
+ * ...
+ * IdlingRegistry.getInstance().unregister(idlingResource);
+ * idlingResource.unregister();
+ * </pre>
+ * This requires Espresso's idling resource artifact on the test classpath.
+ */
+public class TestButlerIdlingResource implements IdlingResource {
+
+    private volatile ResourceCallback resourceCallback;
+
+    private final ButlerIdleCallback.Stub idleCallback = new ButlerIdleCallback.Stub() {
+        @Override
+        public void onIdle() {
+            ResourceCallback callback = resourceCallback;
+            if (callback != null) {
+                callback.onTransitionToIdle();
+            }
+        }
+    };
+
+    @Override
+    public String getName() {
+        return TestButlerIdlingResource.class.getSimpleName();
+    }
+
+    @Override
+    public boolean isIdleNow() {
+        return TestButler.isIdle();
+    }
+
+    @Override
+    public void registerIdleTransitionCallback(ResourceCallback callback) {
+        resourceCallback = callback;
+        TestButler.registerIdleCallback(idleCallback);
+    }
+
+    /**
+     * Stop listening for idle transitions from the Test Butler service
+     */
+    public void unregister() {
+        resourceCallback = null;
+        TestButler.unregisterIdleCallback(idleCallback);
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2019 LinkedIn Corp.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.android.testbutler;
+
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+/**
+ * A {@link TestRule} which applies the device configuration declared with {@link DeviceConfig}
+ * before each test, and reverts it afterwards.
+ * <p>
+ * The configuration is applied in a single call to the Test Butler service, which only changes the
+ * settings that differ from the current device state. After the test, every setting changed since
+ * then (including changes made by the test itself through {@link TestButler}) is restored with
+ * {@link TestButler#resetToCheckpoint()}. Tests without a {@link DeviceConfig} annotation do not
+ * talk to the service at all.
+ * <p>
+ * Note that this rule takes its own checkpoint, replacing any checkpoint taken with
+ * {@link TestButler#checkpoint()}.
+ * <pre>
+ * {@literal @}Rule
+ * public TestButlerRule testButlerRule = new TestButlerRule();
+ *
+ * {@literal @}Test
+ * {@literal @}DeviceConfig(wifi = false, rotation = Surface.ROTATION_90)
+ * public void showsOfflineLandscapeLayout() {
+ *     // ...
+ * }
+ * </pre>
+ */
+public class TestButlerRule implements TestRule {
+
+    @Override
+    public Statement apply(final Statement base, Description description) {
+        final Bundle config = new Bundle();
+        Class<?> testClass = description.getTestClass();
+        if (testClass != null) {
+            addConfig(config, testClass.getAnnotation(DeviceConfig.class));
+        }
+        addConfig(config, description.getAnnotation(DeviceConfig.class));
+
+        if (config.isEmpty()) {
+            return base;
+        }
+
+        return new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                TestButler.applyDeviceConfig(config);
+                try {
+                    base.evaluate();
+                } finally {
+                    TestButler.resetToCheckpoint();
+                }
+            }
+        };
+    }
+
+    private static void addConfig(@NonNull Bundle config, @Nullable DeviceConfig deviceConfig) {
+        if (deviceConfig == null) {
+            return;
+        }
+        addBoolean(config, DeviceConfigKeys.WIFI, deviceConfig.wifi());
+        addBoolean(config, DeviceConfigKeys.GSM, deviceConfig.gsm());
+        addInt(config, DeviceConfigKeys.ROTATION, deviceConfig.rotation());
+        addInt(config, DeviceConfigKeys.LOCATION_MODE, deviceConfig.locationMode());
+        addBoolean(config, DeviceConfigKeys.ALWAYS_FINISH_ACTIVITIES, deviceConfig.alwaysFinishActivities());
+        addBoolean(config, DeviceConfigKeys.SPELL_CHECKER, deviceConfig.spellChecker());
+        addBoolean(config, DeviceConfigKeys.SHOW_IME_WITH_HARD_KEYBOARD, deviceConfig.showImeWithHardKeyboard());
+        addBoolean(config, DeviceConfigKeys.IMMERSIVE_MODE_CONFIRMATION, deviceConfig.immersiveModeConfirmation());
+    }
+
+    private static void addBoolean(@NonNull Bundle config, @NonNull String key, @NonNull boolean[] value) {
+        if (value.length > 1) {
+            throw new IllegalArgumentException("@DeviceConfig " + key + " must have at most one value");
+        }
+        if (value.length == 1) {
+            config.putBoolean(key, value[0]);
+        }
+    }
+
+    private static void addInt(@NonNull Bundle config, @NonNull String key, int value) {
+        if (value != DeviceConfig.UNCHANGED) {
+            config.putInt(key, value);
+        }
+    }
+}